@@ -0,0 +1,69 @@
+// Copyright 2024 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.github.bazelbuild.rules_jvm_external;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Measures how long {@link Hasher} takes to hash files of various sizes. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HasherBenchmark {
+
+  @Param({"1024", "1048576", "67108864"})
+  public int fileSize;
+
+  private File file;
+
+  @Setup(Level.Trial)
+  public void createFile() throws IOException {
+    file = Files.createTempFile("hasher", ".bin").toFile();
+    file.deleteOnExit();
+
+    byte[] buffer = new byte[64 * 1024];
+    Random random = new Random(fileSize);
+    try (OutputStream os = Files.newOutputStream(file.toPath())) {
+      for (int written = 0; written < fileSize; written += buffer.length) {
+        random.nextBytes(buffer);
+        os.write(buffer, 0, Math.min(buffer.length, fileSize - written));
+      }
+    }
+  }
+
+  @Benchmark
+  public String sha256() throws IOException {
+    return Hasher.sha256(file);
+  }
+}
@@ -0,0 +1,44 @@
+// Copyright 2024 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.github.bazelbuild.rules_jvm_external.benchmarks;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs the JMH benchmarks, recording the results as JSON so that they can be compared between
+ * releases. Any arguments are passed through to JMH.
+ */
+public class BenchmarkMain {
+
+  public static void main(String[] args) throws Exception {
+    List<String> jmhArgs = new ArrayList<>(Arrays.asList(args));
+
+    if (!jmhArgs.contains("-rf") && !jmhArgs.contains("-rff")) {
+      // `bazel run` starts us in the runfiles tree, which is not somewhere anyone will look.
+      String workingDirectory = System.getenv("BUILD_WORKING_DIRECTORY");
+      Path results =
+          workingDirectory == null
+              ? Paths.get("jmh-result.json")
+              : Paths.get(workingDirectory).resolve("jmh-result.json");
+      jmhArgs.addAll(List.of("-rf", "json", "-rff", results.toAbsolutePath().toString()));
+    }
+
+    org.openjdk.jmh.Main.main(jmhArgs.toArray(new String[0]));
+  }
+}
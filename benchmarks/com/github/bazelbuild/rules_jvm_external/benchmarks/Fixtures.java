@@ -0,0 +1,182 @@
+// Copyright 2024 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.github.bazelbuild.rules_jvm_external.benchmarks;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.github.bazelbuild.rules_jvm_external.Coordinates;
+import com.github.bazelbuild.rules_jvm_external.resolver.DependencyInfo;
+import com.google.common.graph.GraphBuilder;
+import com.google.common.graph.ImmutableGraph;
+import com.google.common.graph.MutableGraph;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+
+/**
+ * Synthetic inputs for the benchmarks. Everything is generated from a fixed seed, so that each run
+ * of a benchmark sees exactly the same data.
+ */
+public class Fixtures {
+
+  public static final List<URI> REPOSITORIES =
+      List.of(
+          URI.create("https://repo1.maven.org/maven2/"),
+          URI.create("https://maven.google.com/"));
+
+  private Fixtures() {
+    // Utility class
+  }
+
+  /**
+   * Parse a jar shape of the form {@code <entries>x<bytes per entry>}, such as {@code 1000x4096}.
+   */
+  public static int[] parseShape(String shape) {
+    String[] parts = shape.split("x");
+    return new int[] {Integer.parseInt(parts[0]), Integer.parseInt(parts[1])};
+  }
+
+  /**
+   * Write a jar containing {@code entryCount} classes of {@code entrySize} bytes under {@code
+   * root}, grouped into packages of twenty as a typical library would be, along with a manifest and
+   * a handful of service files.
+   */
+  public static Path createJar(Path path, String root, int entryCount, int entrySize)
+      throws IOException {
+    Random random = new Random(entryCount * 31L + entrySize);
+    byte[] contents = new byte[entrySize];
+
+    Manifest manifest = new Manifest();
+    manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+    manifest.getMainAttributes().put(new Attributes.Name("Created-By"), "rules_jvm_external");
+
+    try (OutputStream os = Files.newOutputStream(path);
+        JarOutputStream jos = new JarOutputStream(os, manifest)) {
+      for (int i = 0; i < 5; i++) {
+        jos.putNextEntry(new ZipEntry(String.format("META-INF/services/%s.Service%d", root, i)));
+        jos.write(String.format("%s.pkg%d.Class%d%n", root, i, i * 20).getBytes(UTF_8));
+        jos.closeEntry();
+      }
+
+      String directory = root.replace('.', '/');
+      for (int i = 0; i < entryCount; i++) {
+        // Class files compress reasonably well, so only make part of each entry random.
+        random.nextBytes(contents);
+        for (int j = 0; j < contents.length; j += 2) {
+          contents[j] = 0;
+        }
+        jos.putNextEntry(
+            new ZipEntry(String.format("%s/pkg%d/Class%d.class", directory, i / 20, i)));
+        jos.write(contents);
+        jos.closeEntry();
+      }
+    }
+    return path;
+  }
+
+  /**
+   * Create the results of resolving {@code artifactCount} artifacts, each depending on a few of the
+   * artifacts before it, as you'd expect to find in a lock file.
+   */
+  public static Set<DependencyInfo> createDependencyInfos(int artifactCount) {
+    Random random = new Random(artifactCount);
+    List<Coordinates> coordinates = createCoordinates(artifactCount);
+
+    Set<DependencyInfo> infos = new LinkedHashSet<>();
+    for (int i = 0; i < artifactCount; i++) {
+      Coordinates coords = coordinates.get(i);
+
+      Set<Coordinates> deps = new HashSet<>();
+      for (int j = 0; i > 0 && j < 3; j++) {
+        deps.add(coordinates.get(random.nextInt(i)));
+      }
+
+      SortedSet<String> packages = new TreeSet<>();
+      packages.add(coords.getGroupId());
+      packages.add(coords.getGroupId() + ".internal");
+
+      SortedMap<String, SortedSet<String>> services = new TreeMap<>();
+      if (i % 10 == 0) {
+        services.put(
+            coords.getGroupId() + ".Service",
+            new TreeSet<>(Set.of(coords.getGroupId() + ".internal.ServiceImpl")));
+      }
+
+      StringBuilder sha256 = new StringBuilder();
+      while (sha256.length() < 64) {
+        sha256.append(Long.toHexString(random.nextLong() | Long.MIN_VALUE));
+      }
+
+      infos.add(
+          new DependencyInfo(
+              coords,
+              Set.copyOf(REPOSITORIES.subList(0, 1 + (i % REPOSITORIES.size()))),
+              Optional.of(Path.of(coords.toRepoPath())),
+              Optional.of(sha256.substring(0, 64)),
+              deps,
+              packages,
+              services));
+    }
+    return infos;
+  }
+
+  /**
+   * Create a dependency graph of {@code artifactCount} nodes in which one in ten artifacts is also
+   * requested at an older version, so there are conflicts to resolve.
+   */
+  public static ImmutableGraph<Coordinates> createDependencyGraph(int artifactCount) {
+    Random random = new Random(artifactCount);
+    List<Coordinates> coordinates = createCoordinates(artifactCount);
+
+    MutableGraph<Coordinates> graph = GraphBuilder.directed().allowsSelfLoops(true).build();
+    for (int i = 0; i < artifactCount; i++) {
+      Coordinates coords = coordinates.get(i);
+      graph.addNode(coords);
+      for (int j = 0; i > 0 && j < 3; j++) {
+        Coordinates dep = coordinates.get(random.nextInt(i));
+        if (random.nextInt(10) == 0) {
+          dep = dep.setVersion("0.9");
+        }
+        graph.putEdge(coords, dep);
+      }
+    }
+    return ImmutableGraph.copyOf(graph);
+  }
+
+  private static List<Coordinates> createCoordinates(int artifactCount) {
+    Coordinates[] coordinates = new Coordinates[artifactCount];
+    for (int i = 0; i < artifactCount; i++) {
+      coordinates[i] =
+          new Coordinates(String.format("com.example.group%d:artifact%d:1.%d", i / 10, i, i % 7));
+    }
+    return List.of(coordinates);
+  }
+}
@@ -0,0 +1,63 @@
+// Copyright 2024 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.github.bazelbuild.rules_jvm_external.coursier;
+
+import com.github.bazelbuild.rules_jvm_external.benchmarks.Fixtures;
+import com.github.bazelbuild.rules_jvm_external.resolver.DependencyInfo;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Measures how long {@link NebulaFormat} takes to render lock files of various sizes. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NebulaFormatBenchmark {
+
+  @Param({"100", "1000", "10000"})
+  public int artifacts;
+
+  private List<String> repositories;
+  private Set<DependencyInfo> infos;
+
+  @Setup(Level.Trial)
+  public void createInfos() {
+    repositories =
+        Fixtures.REPOSITORIES.stream().map(Object::toString).collect(Collectors.toList());
+    infos = Fixtures.createDependencyInfos(artifacts);
+  }
+
+  @Benchmark
+  public Map<String, Object> render() {
+    return new NebulaFormat().render(repositories, infos, Map.of());
+  }
+}
@@ -0,0 +1,72 @@
+// Copyright 2024 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.github.bazelbuild.rules_jvm_external.jar;
+
+import com.github.bazelbuild.rules_jvm_external.benchmarks.Fixtures;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Measures how long {@link AddJarManifestEntry} takes to stamp jars of various shapes. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AddJarManifestEntryBenchmark {
+
+  /** The number of entries in the jar, and the size of each entry. */
+  @Param({"100x1024", "10000x1024", "20x1048576"})
+  public String shape;
+
+  private String[] args;
+
+  @Setup(Level.Trial)
+  public void createJar() throws IOException {
+    int[] parsed = Fixtures.parseShape(shape);
+    Path dir = Files.createTempDirectory("add-jar-manifest-entry");
+    Path source =
+        Fixtures.createJar(dir.resolve("input.jar"), "com.example", parsed[0], parsed[1]);
+
+    args =
+        new String[] {
+          "--source",
+          source.toString(),
+          "--output",
+          dir.resolve("output.jar").toString(),
+          "--manifest-entry",
+          "Target-Label:@maven//:com_example_example",
+        };
+  }
+
+  @Benchmark
+  public void addManifestEntry() throws IOException {
+    AddJarManifestEntry.main(args);
+  }
+}
@@ -0,0 +1,111 @@
+// Copyright 2024 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.github.bazelbuild.rules_jvm_external.jar;
+
+import com.github.bazelbuild.rules_jvm_external.benchmarks.Fixtures;
+import com.google.devtools.build.runfiles.Runfiles;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipFile;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures how quickly {@link IndexJar} gets through the entries of real and synthetic jars. The
+ * {@code entries} counter reports entries per second, and running with {@code -prof gc} reports the
+ * bytes allocated per operation, which can be divided by the entry count to get the cost per entry.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IndexJarBenchmark {
+
+  @Param({
+    "gson_for_test/file/gson-2.9.0.jar",
+    "junit_platform_commons_for_test/file/junit-platform-commons-1.8.2.jar",
+    "lombok_for_test/file/lombok-1.18.22.jar",
+    "synthetic:50000x512",
+  })
+  public String jar;
+
+  private Path path;
+  private List<String> entryNames;
+
+  @Setup(Level.Trial)
+  public void findJar() throws IOException {
+    if (jar.startsWith("synthetic:")) {
+      int[] shape = Fixtures.parseShape(jar.substring("synthetic:".length()));
+      path = Files.createTempFile("synthetic", ".jar");
+      path.toFile().deleteOnExit();
+      Fixtures.createJar(path, "com.example", shape[0], shape[1]);
+    } else {
+      path = Paths.get(Runfiles.create().rlocation(jar));
+    }
+
+    List<String> names = new ArrayList<>();
+    try (ZipFile zipFile = new ZipFile(path.toFile())) {
+      Collections.list(zipFile.entries()).forEach(entry -> names.add(entry.getName()));
+    }
+    entryNames = names;
+  }
+
+  @Benchmark
+  public PerJarIndexResults index(EntryCounter counter) throws IOException {
+    counter.entries += entryNames.size();
+    return new IndexJar().index(path);
+  }
+
+  @Benchmark
+  public void extractPackageNames(EntryCounter counter, Blackhole blackhole) {
+    for (String name : entryNames) {
+      if (name.endsWith(".class")) {
+        blackhole.consume(IndexJar.extractPackageName(name));
+      }
+    }
+    counter.entries += entryNames.size();
+  }
+
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  @State(Scope.Thread)
+  public static class EntryCounter {
+    public long entries;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      entries = 0;
+    }
+  }
+}
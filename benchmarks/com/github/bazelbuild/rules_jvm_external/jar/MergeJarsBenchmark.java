@@ -0,0 +1,77 @@
+// Copyright 2024 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.github.bazelbuild.rules_jvm_external.jar;
+
+import com.github.bazelbuild.rules_jvm_external.benchmarks.Fixtures;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Measures how long {@link MergeJars} takes to merge sets of jars of various shapes. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MergeJarsBenchmark {
+
+  @Param({"2", "20"})
+  public int jars;
+
+  /** The number of entries in each jar, and the size of each entry. */
+  @Param({"1000x1024", "20x1048576"})
+  public String shape;
+
+  private String[] args;
+
+  @Setup(Level.Trial)
+  public void createJars() throws IOException {
+    int[] parsed = Fixtures.parseShape(shape);
+    Path dir = Files.createTempDirectory("merge-jars");
+
+    List<String> args = new ArrayList<>();
+    args.add("--output");
+    args.add(dir.resolve("merged.jar").toString());
+    for (int i = 0; i < jars; i++) {
+      Path jar =
+          Fixtures.createJar(
+              dir.resolve("input-" + i + ".jar"), "com.example.jar" + i, parsed[0], parsed[1]);
+      args.add("--sources");
+      args.add(jar.toString());
+    }
+    this.args = args.toArray(new String[0]);
+  }
+
+  @Benchmark
+  public void merge() throws IOException {
+    MergeJars.main(args);
+  }
+}
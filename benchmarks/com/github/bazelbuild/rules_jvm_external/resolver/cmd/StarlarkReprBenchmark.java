@@ -0,0 +1,73 @@
+// Copyright 2024 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.github.bazelbuild.rules_jvm_external.resolver.cmd;
+
+import com.github.bazelbuild.rules_jvm_external.benchmarks.Fixtures;
+import com.github.bazelbuild.rules_jvm_external.coursier.NebulaFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how long {@link StarlarkRepr} takes to print the parts of lock files of various sizes
+ * that are hashed when the lock file is written.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StarlarkReprBenchmark {
+
+  @Param({"100", "1000", "10000"})
+  public int artifacts;
+
+  private Map<Object, Object> toHash;
+
+  @Setup(Level.Trial)
+  public void renderLockFile() {
+    Map<String, Object> rendered =
+        new NebulaFormat()
+            .render(
+                Fixtures.REPOSITORIES.stream().map(Object::toString).collect(Collectors.toList()),
+                Fixtures.createDependencyInfos(artifacts),
+                Map.of());
+
+    // Mirrors the contents hashed by `Main.writeLockFile`
+    toHash = new LinkedHashMap<>();
+    toHash.put("artifacts", rendered.get("artifacts"));
+    toHash.put("dependencies", rendered.get("dependencies"));
+    toHash.put("repositories", rendered.get("repositories"));
+  }
+
+  @Benchmark
+  public String repr() {
+    return new StarlarkRepr().repr(toHash);
+  }
+}
@@ -1150,26 +1150,12 @@ def _coursier_fetch_impl(repository_ctx):
 
         files_to_inspect.append(repository_ctx.path(artifact["file"]))
 
-    hasher_stdout = _execute_with_argsfile(
-        repository_ctx,
-        repository_ctx.attr._sha256_hasher,
-        "hasher",
-        "Calculating sha256 checksums..",
-        "obtaining the sha256 checksums",
-        files_to_inspect,
-    )
-
-    shas = {}
-    for line in hasher_stdout.splitlines():
-        parts = line.split(" ")
-        path = str(repository_ctx.path(parts[1]))
-        shas[path] = parts[0]
-
+    # The indexer also reports the sha256 of each file, so that every file is only read once.
     index_jars_stdout = _execute_with_argsfile(
         repository_ctx,
         repository_ctx.attr._index_jar,
         "jar_indexer",
-        "Indexing jars",
+        "Indexing jars and calculating sha256 checksums",
         "indexing jars",
         files_to_inspect,
     )
@@ -1180,6 +1166,29 @@ def _coursier_fetch_impl(repository_ctx):
         if path != jar:
             jars_to_index_results[path] = jars_to_index_results.pop(jar)
 
+    shas = {}
+    for path, index_results in jars_to_index_results.items():
+        if index_results.get("sha256"):
+            shas[path] = index_results["sha256"]
+
+    # Indexers built before they could hash files leave the checksums to the hasher, which only
+    # needs to read the files the indexer didn't hash.
+    files_to_hash = [f for f in files_to_inspect if str(f) not in shas]
+    if files_to_hash:
+        hasher_stdout = _execute_with_argsfile(
+            repository_ctx,
+            repository_ctx.attr._sha256_hasher,
+            "hasher",
+            "Calculating sha256 checksums..",
+            "obtaining the sha256 checksums",
+            files_to_hash,
+        )
+
+        for line in hasher_stdout.splitlines():
+            parts = line.split(" ")
+            path = str(repository_ctx.path(parts[1]))
+            shas[path] = parts[0]
+
     for artifact in dep_tree["dependencies"]:
         file = artifact["file"]
         if file == None:
@@ -1490,6 +1499,7 @@ coursier_fetch = repository_rule(
         "COURSIER_CACHE",
         "COURSIER_OPTS",
         "COURSIER_URL",
+        "RJE_DIGEST_CACHE",
         "RJE_VERBOSE",
         "XDG_CACHE_HOME",
     ],
@@ -13,6 +13,13 @@ load("//private/lib:coordinates.bzl", "to_external_form", "to_purl", "unpack_coo
 load("//private/lib:urls.bzl", "scheme_and_host")
 load("//settings:stamp_manifest.bzl", "StampManifestProvider")
 
+# `AddJarManifestEntry` can be run as a (multiplex) persistent worker, which saves starting a JVM
+# for each of the many jars in a `maven_install`.
+_WORKER_EXECUTION_REQUIREMENTS = {
+    "supports-multiplex-workers": "1",
+    "supports-workers": "1",
+}
+
 def _jvm_import_impl(ctx):
     if not ctx.attr.jar and not ctx.attr.jars:
         fail("The `jar` attribute is mandatory.")
@@ -33,6 +40,8 @@ def _jvm_import_impl(ctx):
         args = ctx.actions.args()
         args.add_all(["--source", injar, "--output", outjar])
         args.add("--manifest-entry", ctx.label, format = "Target-Label:%s")
+        args.use_param_file("@%s", use_always = True)
+        args.set_param_file_format("multiline")
         ctx.actions.run(
             executable = ctx.executable._add_jar_manifest_entry,
             arguments = [args],
@@ -40,6 +49,7 @@ def _jvm_import_impl(ctx):
             outputs = [outjar],
             mnemonic = "StampJarManifest",
             progress_message = "Stamping the manifest of %{label}",
+            execution_requirements = _WORKER_EXECUTION_REQUIREMENTS,
         )
     else:
         outjar = injar
@@ -58,6 +68,8 @@ def _jvm_import_impl(ctx):
 
     # Make sure the compile jar is safe to compile with
     args.add("--make-safe")
+    args.use_param_file("@%s", use_always = True)
+    args.set_param_file_format("multiline")
 
     ctx.actions.run(
         executable = ctx.executable._add_jar_manifest_entry,
@@ -66,6 +78,7 @@ def _jvm_import_impl(ctx):
         outputs = [compilejar],
         mnemonic = "CreateCompileJar",
         progress_message = "Creating compile jar for %s" % ctx.label,
+        execution_requirements = _WORKER_EXECUTION_REQUIREMENTS,
     )
 
     additional_providers = []
@@ -29,11 +29,17 @@ def _strip_excluded_workspace_jars(jar_files, excluded_workspaces):
 
     return to_return
 
-def _combine_jars(ctx, merge_jars, inputs, excludes, output):
+def _combine_jars(ctx, merge_jars, inputs, excludes, output, manifest_entries = {}):
     args = ctx.actions.args()
     args.add("--output", output)
     args.add_all(inputs, before_each = "--sources")
     args.add_all(excludes, before_each = "--exclude")
+    args.add_all(
+        ["%s:%s" % (k, v) for (k, v) in manifest_entries.items()],
+        before_each = "--manifest-entry",
+    )
+    args.use_param_file("@%s", use_always = True)
+    args.set_param_file_format("multiline")
 
     ctx.actions.run(
         mnemonic = "MergeJars",
@@ -41,6 +47,10 @@ def _combine_jars(ctx, merge_jars, inputs, excludes, output):
         outputs = [output],
         executable = merge_jars,
         arguments = [args],
+        execution_requirements = {
+            "supports-multiplex-workers": "1",
+            "supports-workers": "1",
+        },
     )
 
 def _maven_project_jar_impl(ctx):
@@ -64,8 +74,8 @@ def _maven_project_jar_impl(ctx):
         ctx.attr.excluded_workspaces,
     )
 
-    # Merge together all the binary jars
-    intermediate_jar = ctx.actions.declare_file("%s.jar" % ctx.label.name)
+    # Merge together all the binary jars, adding manifest lines as we go
+    bin_jar = ctx.actions.declare_file("%s.jar" % ctx.label.name)
     _combine_jars(
         ctx,
         ctx.executable._merge_jars,
@@ -73,29 +83,10 @@ def _maven_project_jar_impl(ctx):
         depset(transitive =
                    [ji.transitive_runtime_jars for ji in info.dep_infos.to_list()] +
                    [jar[JavaInfo].transitive_runtime_jars for jar in ctx.attr.deploy_env]),
-        intermediate_jar,
+        bin_jar,
+        ctx.attr.manifest_entries,
     )
 
-    # Add manifest lines if necessary
-    if len(ctx.attr.manifest_entries.items()):
-        bin_jar = ctx.actions.declare_file("amended_%s.jar" % ctx.label.name)
-        args = ctx.actions.args()
-        args.add_all(["--source", intermediate_jar, "--output", bin_jar])
-        args.add_all(
-            ["%s:%s" % (k, v) for (k, v) in ctx.attr.manifest_entries.items()],
-            before_each = "--manifest-entry",
-        )
-        ctx.actions.run(
-            executable = ctx.executable._add_jar_manifest_entry,
-            arguments = [args],
-            inputs = [intermediate_jar],
-            outputs = [bin_jar],
-            mnemonic = "AmendManifestEntry",
-            progress_message = "Adding additional manifest entries %s" % ctx.label,
-        )
-    else:
-        bin_jar = intermediate_jar
-
     # Bazel's java_binary has a deploy_env attribute that only supports java_binary targets.
     # Unfortunately, java_binary targets only expose their runtime classpath via the native
     # JavaRuntimeClasspathProvider that is not accessible from Starlark, so maven_project_jar can't
@@ -228,11 +219,6 @@ single artifact that other teams can download and use.
                 [JavaInfo],
             ],
         ),
-        "_add_jar_manifest_entry": attr.label(
-            executable = True,
-            cfg = "exec",
-            default = "//private/tools/java/com/github/bazelbuild/rules_jvm_external/jar:AddJarManifestEntry",
-        ),
         # Bazel's own singlejar doesn't respect java service files,
         # so use our own.
         "_merge_jars": attr.label(
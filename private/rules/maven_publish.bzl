@@ -111,6 +111,12 @@ using `--define` or via environment variables (in all caps, e.g. `MAVEN_REPO`):
   pgp_signing_pwd = Password for the secret key
 
 When signing with GPG, the current default key is used.
+
+Uploads happen concurrently. The `MAVEN_UPLOAD_PARALLELISM` environment variable
+sets how many may be in flight at once (default 8), and
+`MAVEN_UPLOAD_CONNECTIONS_PER_HOST` how many of those may go to the same host
+(default 4). Setting `MAVEN_SKIP_UNCHANGED=true` skips uploading artifacts whose
+remote checksum matches the local artifact.
 """,
     executable = True,
     attrs = {
@@ -0,0 +1,69 @@
+// Copyright 2024 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.github.bazelbuild.rules_jvm_external;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Reads and writes the files of caches which may be shared by concurrent processes. Readers only
+ * ever see a whole file or none at all, and a file that can't be read is treated as missing.
+ */
+public class CacheFiles {
+
+  /** Writes the contents of a cache file. */
+  public interface Contents {
+    void writeTo(Writer writer) throws IOException;
+  }
+
+  private CacheFiles() {
+    // Utility methods
+  }
+
+  /** Replace {@code file} with {@code contents}, creating any missing parent directories. */
+  public static void write(Path file, Contents contents) throws IOException {
+    Path parent = file.toAbsolutePath().getParent();
+    Files.createDirectories(parent);
+    // Write to a temporary file first, so that concurrent readers never see a partial file.
+    Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+    try {
+      try (Writer writer = Files.newBufferedWriter(temp, UTF_8)) {
+        contents.writeTo(writer);
+      }
+      try {
+        Files.move(temp, file, ATOMIC_MOVE, REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temp, file, REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  /**
+   * Report that {@code file} couldn't be read. A damaged cache file is no worse than a missing one,
+   * and will be overwritten the next time it is written.
+   */
+  public static void ignoreDamaged(String description, Path file, Exception e) {
+    System.err.printf("Ignoring unreadable %s %s: %s%n", description, file, e);
+  }
+}
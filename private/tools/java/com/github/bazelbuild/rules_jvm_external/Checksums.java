@@ -0,0 +1,101 @@
+// Copyright 2024 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.github.bazelbuild.rules_jvm_external;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Computes checksums of files. Any number of digests are calculated in a single pass over the
+ * file, reading through a fixed-size buffer, so the memory used doesn't depend on how large the
+ * file is.
+ */
+public class Checksums {
+
+  public static final String MD5 = "MD5";
+  public static final String SHA_1 = "SHA-1";
+  public static final String SHA_256 = "SHA-256";
+  public static final String SHA_512 = "SHA-512";
+
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+  private static final int BUFFER_SIZE = 256 * 1024;
+
+  private Checksums() {
+    // Utility methods
+  }
+
+  public static String sha256(Path path) throws IOException {
+    return calculate(path, SHA_256).get(SHA_256);
+  }
+
+  /**
+   * Calculate the lower-case hex encoded digests of the contents of {@code path}.
+   *
+   * @param algorithms names of {@link MessageDigest} algorithms, such as {@link #SHA_256}.
+   * @return the digests, keyed by algorithm name, in the order they were asked for.
+   */
+  public static Map<String, String> calculate(Path path, String... algorithms) throws IOException {
+    MessageDigest[] digests = new MessageDigest[algorithms.length];
+    for (int i = 0; i < algorithms.length; i++) {
+      digests[i] = getDigest(algorithms[i]);
+    }
+
+    try (FileChannel channel = FileChannel.open(path, READ)) {
+      // Small files fit in the buffer with room to spare, so they're read in one go
+      ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(channel.size() + 1, BUFFER_SIZE));
+      while (channel.read(buffer) != -1) {
+        buffer.flip();
+        for (MessageDigest digest : digests) {
+          buffer.mark();
+          digest.update(buffer);
+          buffer.reset();
+        }
+        buffer.clear();
+      }
+    }
+
+    Map<String, String> toReturn = new LinkedHashMap<>();
+    for (int i = 0; i < algorithms.length; i++) {
+      toReturn.put(algorithms[i], toHex(digests[i].digest()));
+    }
+    return Collections.unmodifiableMap(toReturn);
+  }
+
+  public static String toHex(byte[] bytes) {
+    char[] hex = new char[bytes.length * 2];
+    for (int i = 0; i < bytes.length; i++) {
+      hex[2 * i] = HEX_DIGITS[(bytes[i] >> 4) & 0xf];
+      hex[2 * i + 1] = HEX_DIGITS[bytes[i] & 0xf];
+    }
+    return new String(hex);
+  }
+
+  private static MessageDigest getDigest(String algorithm) {
+    try {
+      return MessageDigest.getInstance(algorithm);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalArgumentException("Unsupported digest algorithm: " + algorithm, e);
+    }
+  }
+}
@@ -0,0 +1,184 @@
+// Copyright 2024 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.github.bazelbuild.rules_jvm_external;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A persistent cache of the sha256 of files, keyed by each file's path, size, modification and
+ * change times, and inode. If any of those change, the file is hashed again.
+ *
+ * <p>A file that is modified within the resolution of its timestamps may keep the same key, so the
+ * digests of recently modified files are never stored. They'll be cached the next time around.
+ */
+public class DigestCache {
+
+  // Bump this whenever the format of the cache file changes
+  private static final String FORMAT_VERSION = "rje-digest-cache-v1";
+  // Some file systems only record modification times to the nearest couple of seconds
+  private static final long RECENT_MILLIS = TimeUnit.SECONDS.toMillis(3);
+
+  private final Path cacheFile;
+  private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+  private final Set<String> used = ConcurrentHashMap.newKeySet();
+  private volatile boolean modified;
+
+  private DigestCache(Path cacheFile) {
+    this.cacheFile = cacheFile;
+  }
+
+  /** A cache which never remembers anything. */
+  public static DigestCache disabled() {
+    return new DigestCache(null);
+  }
+
+  /** The cache at the path given by {@code RJE_DIGEST_CACHE}, if that's set. */
+  public static DigestCache fromEnvironment() {
+    String location = System.getenv("RJE_DIGEST_CACHE");
+    if (location == null || location.isEmpty()) {
+      return disabled();
+    }
+    return open(Paths.get(location));
+  }
+
+  public static DigestCache open(Path cacheFile) {
+    DigestCache cache = new DigestCache(cacheFile);
+    cache.load();
+    return cache;
+  }
+
+  /** The sha256 of {@code file}, as a hex string. */
+  public String sha256(Path file) throws IOException {
+    if (cacheFile == null) {
+      return hash(file);
+    }
+    String path = file.toAbsolutePath().normalize().toString();
+    String stamp = stamp(file);
+
+    Entry entry = entries.get(path);
+    if (entry != null && entry.stamp.equals(stamp)) {
+      used.add(path);
+      return entry.sha256;
+    }
+
+    long started = System.currentTimeMillis();
+    String sha256 = hash(file);
+
+    // The file may have changed while we were reading it, in which case its stamp will have too.
+    if (stamp.equals(stamp(file)) && !isRecent(file, started)) {
+      entries.put(path, new Entry(stamp, sha256));
+      used.add(path);
+      modified = true;
+    }
+    return sha256;
+  }
+
+  /** Write any new digests back to the cache file. */
+  public void save() throws IOException {
+    if (cacheFile == null || !modified) {
+      return;
+    }
+
+    // Forget about files that have gone away, so that the cache doesn't grow forever.
+    entries.keySet().removeIf(path -> !used.contains(path) && !Files.exists(Paths.get(path)));
+
+    CacheFiles.write(
+        cacheFile,
+        writer -> {
+          writer.write(FORMAT_VERSION);
+          writer.write('\n');
+          for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            writer.write(entry.getValue().sha256);
+            writer.write('\t');
+            writer.write(entry.getValue().stamp);
+            writer.write('\t');
+            writer.write(entry.getKey());
+            writer.write('\n');
+          }
+        });
+  }
+
+  private void load() {
+    try (BufferedReader reader = Files.newBufferedReader(cacheFile, UTF_8)) {
+      if (!FORMAT_VERSION.equals(reader.readLine())) {
+        return;
+      }
+      for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+        // The path is last, since it's the only part that might contain a tab
+        String[] parts = line.split("\t", 3);
+        if (parts.length == 3) {
+          entries.put(parts[2], new Entry(parts[1], parts[0]));
+        }
+      }
+    } catch (NoSuchFileException e) {
+      // Nothing has been cached yet
+    } catch (IOException e) {
+      CacheFiles.ignoreDamaged("digest cache", cacheFile, e);
+      entries.clear();
+    }
+  }
+
+  private static String hash(Path file) throws IOException {
+    return Checksums.sha256(file);
+  }
+
+  private static String stamp(Path file) throws IOException {
+    BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+    return String.join(
+        " ",
+        String.valueOf(attrs.size()),
+        String.valueOf(attrs.lastModifiedTime()),
+        String.valueOf(changeTime(file)),
+        String.valueOf(attrs.fileKey()));
+  }
+
+  // The change time is updated even if someone carefully resets the modification time.
+  private static FileTime changeTime(Path file) throws IOException {
+    try {
+      return (FileTime) Files.getAttribute(file, "unix:ctime");
+    } catch (UnsupportedOperationException | IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  // Any later write will move the modification time on from one that's old enough, and resetting
+  // the modification time afterwards still changes the change time.
+  private static boolean isRecent(Path file, long started) throws IOException {
+    return Files.getLastModifiedTime(file).toMillis() > started - RECENT_MILLIS;
+  }
+
+  private static class Entry {
+    private final String stamp;
+    private final String sha256;
+
+    Entry(String stamp, String sha256) {
+      this.stamp = stamp;
+      this.sha256 = sha256;
+    }
+  }
+}
@@ -13,23 +13,27 @@
 // limitations under the License.
 package com.github.bazelbuild.rules_jvm_external;
 
-import java.io.BufferedInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 /** A tool to compute the sha256 hash of a file. */
 public class Hasher {
 
-  public static void main(String[] args) throws NoSuchAlgorithmException, IOException {
+  public static void main(String[] args) throws IOException {
     Stream<String> fileStream = argsToStream(args);
-    System.out.print(hashFiles(fileStream));
+    DigestCache cache = DigestCache.fromEnvironment();
+    System.out.print(hashFiles(fileStream, cache));
+    cache.save();
   }
 
   static Stream<String> argsToStream(String[] args) throws IOException {
@@ -46,51 +50,49 @@ public class Hasher {
   }
 
   static String hashFiles(Stream<String> files) {
-    return files
-        .parallel()
-        .map(
-            arg -> {
-              final File file = new File(arg);
-
-              // Since this tool is for private usage, just do a simple assertion for the filename
-              // argument.
-              if (!file.exists() || !file.isFile()) {
-                throw new IllegalArgumentException(
-                    "File does not exist or is not a file: " + file.getAbsolutePath());
-              }
-
-              try {
-                return sha256(file) + " " + file + "\n";
-              } catch (Exception ex) {
-                throw new RuntimeException(ex);
-              }
-            })
-        .collect(Collectors.joining());
+    return hashFiles(files, DigestCache.disabled());
   }
 
-  static String sha256(File file) throws NoSuchAlgorithmException, IOException {
-    byte[] buffer = new byte[8192];
-    int count;
-    MessageDigest digest = MessageDigest.getInstance("SHA-256");
-    try (BufferedInputStream bufferedInputStream =
-        new BufferedInputStream(new FileInputStream(file))) {
-      while ((count = bufferedInputStream.read(buffer)) > 0) {
-        digest.update(buffer, 0, count);
+  static String hashFiles(Stream<String> files, DigestCache cache) {
+    // Hashing is mostly waiting for the disk, so use more threads than we have processors
+    ExecutorService executor =
+        Executors.newFixedThreadPool(
+            Math.max(4, 2 * Runtime.getRuntime().availableProcessors()),
+            new DaemonThreadFactory("hasher"));
+    try {
+      List<CompletableFuture<String>> lines =
+          files
+              .map(
+                  arg ->
+                      CompletableFuture.supplyAsync(() -> hashFile(new File(arg), cache), executor))
+              .collect(Collectors.toList());
+      return lines.stream().map(CompletableFuture::join).collect(Collectors.joining());
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
       }
+      throw e;
+    } finally {
+      executor.shutdownNow();
     }
+  }
 
-    // sha256 is always 64 characters.
-    StringBuilder hexString = new StringBuilder(64);
+  private static String hashFile(File file, DigestCache cache) {
+    // Since this tool is for private usage, just do a simple assertion for the filename
+    // argument.
+    if (!file.exists() || !file.isFile()) {
+      throw new IllegalArgumentException(
+          "File does not exist or is not a file: " + file.getAbsolutePath());
+    }
 
-    // Convert digest byte array to a hex string.
-    for (byte b : digest.digest()) {
-      String hex = Integer.toHexString(0xff & b);
-      if (hex.length() == 1) {
-        hexString.append('0');
-      }
-      hexString.append(hex);
+    try {
+      return cache.sha256(file.toPath()) + " " + file + "\n";
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
     }
+  }
 
-    return hexString.toString();
+  static String sha256(File file) throws IOException {
+    return Checksums.sha256(file.toPath());
   }
 }
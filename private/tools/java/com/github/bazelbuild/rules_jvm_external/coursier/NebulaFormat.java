@@ -172,7 +172,8 @@ public class NebulaFormat {
                 TreeMap::new));
   }
 
-  private String stripAuthenticationInformation(String possibleUri) {
+  /** Remove any credentials from {@code possibleUri}, as used for the lock file's repositories. */
+  public static String stripAuthenticationInformation(String possibleUri) {
     try {
       URI uri = new URI(possibleUri);
       URI stripped =
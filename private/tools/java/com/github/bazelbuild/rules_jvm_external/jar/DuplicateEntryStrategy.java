@@ -8,25 +8,27 @@ import java.util.Arrays;
 enum DuplicateEntryStrategy {
   LAST_IN_WINS("last-wins") {
     @Override
-    public boolean isReplacingCurrent(String name, byte[] originalHash, byte[] newHash) {
+    public boolean isReplacingCurrent(
+        String name, EntryFingerprint original, EntryFingerprint replacement) {
       return true;
     }
   },
   FIRST_IN_WINS("first-wins") {
     @Override
-    public boolean isReplacingCurrent(String name, byte[] originalHash, byte[] newHash) {
-      return originalHash == null;
+    public boolean isReplacingCurrent(
+        String name, EntryFingerprint original, EntryFingerprint replacement) {
+      return original == null;
     }
   },
   IS_ERROR("are-errors") {
     @Override
-    public boolean isReplacingCurrent(String name, byte[] originalHash, byte[] newHash)
-        throws IOException {
-      if (originalHash == null) {
+    public boolean isReplacingCurrent(
+        String name, EntryFingerprint original, EntryFingerprint replacement) throws IOException {
+      if (original == null) {
         return true;
       }
 
-      if (Arrays.equals(originalHash, newHash)) {
+      if (original.hasSameContentsAs(replacement)) {
         return false;
       }
 
@@ -57,13 +59,13 @@ enum DuplicateEntryStrategy {
   }
 
   /**
-   * Whether the current version of {@code name} (as identified by {@code originalHash}) should be
-   * replaced by the version identified by {@code newHash}. Both hashes should be generated using a
-   * {@link java.security.MessageDigest}, and the algorithm used for both should be the same.
+   * Whether the current version of {@code name} (as identified by {@code original}) should be
+   * replaced by the version identified by {@code replacement}. The contents of either are only read
+   * if the strategy needs to compare them and they can't be told apart by their size and CRC.
    *
-   * @param originalHash Generated hash, which may be null.
-   * @param newHash Generated hash, which must not be null.
+   * @param original Fingerprint of the current version, which may be null.
+   * @param replacement Fingerprint of the new version, which must not be null.
    */
-  public abstract boolean isReplacingCurrent(String name, byte[] originalHash, byte[] newHash)
-      throws IOException;
+  public abstract boolean isReplacingCurrent(
+      String name, EntryFingerprint original, EntryFingerprint replacement) throws IOException;
 }
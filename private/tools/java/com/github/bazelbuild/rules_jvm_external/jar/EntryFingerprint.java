@@ -0,0 +1,57 @@
+// Copyright 2024 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.github.bazelbuild.rules_jvm_external.jar;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Identifies the contents of a zip entry. The size and CRC-32 recorded in the zip's central
+ * directory are enough to tell most entries apart, so the contents are only read and digested when
+ * those match.
+ */
+class EntryFingerprint {
+
+  private final long size;
+  private final long crc;
+  private final DigestSupplier digestSupplier;
+  private byte[] digest;
+
+  EntryFingerprint(long size, long crc, DigestSupplier digestSupplier) {
+    this.size = size;
+    this.crc = crc;
+    this.digestSupplier = digestSupplier;
+  }
+
+  /** Whether this and {@code other} have the same contents. */
+  boolean hasSameContentsAs(EntryFingerprint other) throws IOException {
+    if (size != other.size || crc != other.crc) {
+      return false;
+    }
+    return Arrays.equals(getDigest(), other.getDigest());
+  }
+
+  private byte[] getDigest() throws IOException {
+    if (digest == null) {
+      digest = digestSupplier.get();
+    }
+    return digest;
+  }
+
+  @FunctionalInterface
+  interface DigestSupplier {
+    byte[] get() throws IOException;
+  }
+}
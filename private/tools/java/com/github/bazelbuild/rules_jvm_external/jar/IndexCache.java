@@ -0,0 +1,96 @@
+// Copyright 2024 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.github.bazelbuild.rules_jvm_external.jar;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.github.bazelbuild.rules_jvm_external.CacheFiles;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Objects;
+
+/**
+ * An on-disk cache of {@link IndexJar} results. The contents of a jar are identified by its
+ * sha256, so the results can be reused for as long as the cache exists, no matter where the jar
+ * was downloaded from or where it lives now.
+ */
+public class IndexCache {
+
+  // Bump this whenever the results `IndexJar` produces change, so stale entries are ignored.
+  private static final String FORMAT_VERSION = "v2";
+
+  private final Path root;
+  private final IndexJar indexJar;
+  private final Gson gson = new Gson();
+
+  public IndexCache(Path root) {
+    this(root, new IndexJar());
+  }
+
+  IndexCache(Path root, IndexJar indexJar) {
+    this.root = Objects.requireNonNull(root, "Cache root").resolve(FORMAT_VERSION);
+    this.indexJar = indexJar;
+
+    try {
+      Files.createDirectories(this.root);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Index the jar at {@code path}, whose contents have the digest {@code sha256}, returning the
+   * cached results if the same contents have been indexed before.
+   */
+  public PerJarIndexResults index(Path path, String sha256) throws IOException {
+    Path cached = root.resolve(sha256.substring(0, 2)).resolve(sha256 + ".json");
+
+    PerJarIndexResults results = read(cached);
+    if (results != null) {
+      return results;
+    }
+
+    results = indexJar.index(path);
+    write(cached, results);
+    return results;
+  }
+
+  private PerJarIndexResults read(Path cached) throws IOException {
+    try (Reader reader = Files.newBufferedReader(cached, UTF_8)) {
+      PerJarIndexResults results = gson.fromJson(reader, PerJarIndexResults.class);
+      if (results == null
+          || results.getPackages() == null
+          || results.getServiceImplementations() == null) {
+        return null;
+      }
+      return results;
+    } catch (NoSuchFileException e) {
+      return null;
+    } catch (JsonParseException e) {
+      CacheFiles.ignoreDamaged("jar index", cached, e);
+      return null;
+    }
+  }
+
+  private void write(Path cached, PerJarIndexResults results) throws IOException {
+    CacheFiles.write(cached, writer -> gson.toJson(results, writer));
+  }
+}
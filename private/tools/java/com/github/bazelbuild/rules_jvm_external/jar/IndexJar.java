@@ -14,6 +14,7 @@
 
 package com.github.bazelbuild.rules_jvm_external.jar;
 
+import com.github.bazelbuild.rules_jvm_external.DigestCache;
 import com.google.gson.Gson;
 import java.io.BufferedInputStream;
 import java.io.BufferedReader;
@@ -25,7 +26,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.AbstractMap;
-import java.util.Arrays;
+import java.util.Enumeration;
 import java.util.Map;
 import java.util.SortedMap;
 import java.util.SortedSet;
@@ -37,6 +38,7 @@ import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 
 public class IndexJar {
@@ -45,6 +47,17 @@ public class IndexJar {
       Pattern.compile("[1-9][0-9]*").asPredicate();
 
   private static final String SERVICES_DIRECTORY_PREFIX = "META-INF/services/";
+  private static final String VERSIONS_DIRECTORY_PREFIX = "META-INF/versions/";
+
+  private final DigestCache digests;
+
+  public IndexJar() {
+    this(DigestCache.disabled());
+  }
+
+  public IndexJar(DigestCache digests) {
+    this.digests = digests;
+  }
 
   public static void main(String[] args) throws IOException {
     if (args.length != 2 || !"--argsfile".equals(args[0])) {
@@ -53,18 +66,31 @@ public class IndexJar {
     }
 
     Path argsFile = Paths.get(args[1]);
-    Map<String, PerJarIndexResults> index = new IndexJar().index(Files.lines(argsFile));
+    DigestCache digests = DigestCache.fromEnvironment();
+    // Callers need the sha256 of each jar too, and this saves them reading every jar again.
+    Map<String, PerJarIndexResults> index =
+        new IndexJar(digests).indexAndHash(Files.lines(argsFile));
     System.out.println(new Gson().toJson(index));
+    digests.save();
   }
 
   public Map<String, PerJarIndexResults> index(Stream<String> source) {
+    return index(source, this::index);
+  }
+
+  /** As {@link #index(Stream)}, but the results also include the sha256 of each jar. */
+  public Map<String, PerJarIndexResults> indexAndHash(Stream<String> source) {
+    return index(source, this::indexAndHash);
+  }
+
+  private Map<String, PerJarIndexResults> index(Stream<String> source, Indexer indexer) {
     TreeMap<String, PerJarIndexResults> index =
         source
             .parallel()
             .map(
                 path -> {
                   try {
-                    PerJarIndexResults results = index(Paths.get(path));
+                    PerJarIndexResults results = indexer.index(Paths.get(path));
                     return new AbstractMap.SimpleEntry<>(path, results);
                   } catch (IOException e) {
                     throw new UncheckedIOException(e);
@@ -83,35 +109,71 @@ public class IndexJar {
   }
 
   public PerJarIndexResults index(Path path) throws IOException {
-    SortedSet<String> packages = new TreeSet<>();
+    // Reading the central directory gives us every entry name without having to inflate anything.
+    // Only the service files need to be read.
+    try (ZipFile zipFile = new ZipFile(path.toFile())) {
+      return index(zipFile);
+    } catch (ZipException e) {
+      // The central directory may be missing or damaged, so fall back to reading every entry.
+      return indexEntries(path);
+    }
+  }
+
+  /**
+   * Index the jar at {@code path} and calculate its sha256. Unless the digest cache already knows
+   * the sha256, this reads the jar twice: once in full to hash it, and again for the central
+   * directory and service files.
+   */
+  public PerJarIndexResults indexAndHash(Path path) throws IOException {
+    String sha256 = digests.sha256(path);
+    PerJarIndexResults results = index(path);
+    return new PerJarIndexResults(
+        results.getPackages(), results.getServiceImplementations(), sha256);
+  }
+
+  private PerJarIndexResults index(ZipFile zipFile) throws IOException {
+    PackageCollector packages = new PackageCollector();
+    SortedMap<String, SortedSet<String>> serviceImplementations = new TreeMap<>();
+    Enumeration<? extends ZipEntry> entries = zipFile.entries();
+    while (entries.hasMoreElements()) {
+      ZipEntry entry = entries.nextElement();
+      if (isServiceEntry(entry.getName())) {
+        try (InputStream is = zipFile.getInputStream(entry)) {
+          String serviceInterface = entry.getName().substring(SERVICES_DIRECTORY_PREFIX.length());
+          serviceImplementations.put(serviceInterface, parseServiceImplementations(is));
+        }
+      }
+      packages.add(entry.getName());
+    }
+    return new PerJarIndexResults(packages.getPackages(), serviceImplementations);
+  }
+
+  private PerJarIndexResults indexEntries(Path path) throws IOException {
+    PackageCollector packages = new PackageCollector();
     SortedMap<String, SortedSet<String>> serviceImplementations = new TreeMap<>();
     try (InputStream fis = new BufferedInputStream(Files.newInputStream(path));
         ZipInputStream zis = new ZipInputStream(fis)) {
       try {
         ZipEntry entry;
         while ((entry = zis.getNextEntry()) != null) {
-          if (entry.getName().startsWith(SERVICES_DIRECTORY_PREFIX)
-              && !SERVICES_DIRECTORY_PREFIX.equals(entry.getName())) {
+          if (isServiceEntry(entry.getName())) {
             String serviceInterface = entry.getName().substring(SERVICES_DIRECTORY_PREFIX.length());
             SortedSet<String> implementingClasses = parseServiceImplementations(zis);
             serviceImplementations.put(serviceInterface, implementingClasses);
           }
-          if (!entry.getName().endsWith(".class")) {
-            continue;
-          }
-          if ("module-info.class".equals(entry.getName())
-              || entry.getName().endsWith("/module-info.class")) {
-            continue;
-          }
-          packages.add(extractPackageName(entry.getName()));
+          packages.add(entry.getName());
         }
       } catch (ZipException e) {
         System.err.printf("Caught ZipException: %s%n", e);
       }
-      return new PerJarIndexResults(packages, serviceImplementations);
+      return new PerJarIndexResults(packages.getPackages(), serviceImplementations);
     }
   }
 
+  private boolean isServiceEntry(String name) {
+    return name.startsWith(SERVICES_DIRECTORY_PREFIX) && !SERVICES_DIRECTORY_PREFIX.equals(name);
+  }
+
   // Visible for testing
   // Note that parseServiceImplementation does not close the passed InputStream, the caller is
   // responsible for doing this.
@@ -121,37 +183,107 @@ public class IndexJar {
     // We can't close the inputStream here or if we're given a ZipInputStream it will also prevent
     // the caller from reading subsequent entries.
     BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(inputStream));
-    String implementingClass = bufferedReader.readLine();
-    while (implementingClass != null) {
-      implementingClass = implementingClass.replaceAll("[ \\t]", "").replaceFirst("#.*", "");
+    String line;
+    while ((line = bufferedReader.readLine()) != null) {
+      String implementingClass = stripServiceLine(line);
       if (!implementingClass.isEmpty()) {
         implementingClasses.add(implementingClass);
       }
-      implementingClass = bufferedReader.readLine();
     }
     return implementingClasses;
   }
 
-  private String extractPackageName(String zipEntryName) {
-    String[] parts = zipEntryName.split("/");
-    if (parts.length == 1) {
+  // Removes comments and any spaces or tabs. Most lines have neither, and are returned as they are.
+  private static String stripServiceLine(String line) {
+    int end = line.indexOf('#');
+    if (end == -1) {
+      end = line.length();
+    }
+
+    StringBuilder builder = null;
+    for (int i = 0; i < end; i++) {
+      char c = line.charAt(i);
+      if (c == ' ' || c == '\t') {
+        if (builder == null) {
+          builder = new StringBuilder(end).append(line, 0, i);
+        }
+      } else if (builder != null) {
+        builder.append(c);
+      }
+    }
+
+    if (builder != null) {
+      return builder.toString();
+    }
+    return end == line.length() ? line : line.substring(0, end);
+  }
+
+  // Visible for testing
+  static String extractPackageName(String zipEntryName) {
+    int lastSlash = zipEntryName.lastIndexOf('/');
+    if (lastSlash == -1) {
       return "";
     }
-    int skip = 0;
+
+    int start = 0;
     // As per https://docs.oracle.com/en/java/javase/13/docs/specs/jar/jar.html
-    if (parts.length > 3
-        && "META-INF".equals(parts[0])
-        && "versions".equals(parts[1])
-        && isNumericVersion(parts[2])) {
-      skip = 3;
+    if (zipEntryName.startsWith(VERSIONS_DIRECTORY_PREFIX)) {
+      int versionEnd = zipEntryName.indexOf('/', VERSIONS_DIRECTORY_PREFIX.length());
+      if (versionEnd != -1
+          && isNumericVersion(
+              zipEntryName.substring(VERSIONS_DIRECTORY_PREFIX.length(), versionEnd))) {
+        start = versionEnd + 1;
+      }
     }
 
-    // -1 for the class name, -skip for the skipped META-INF prefix.
-    int limit = parts.length - 1 - skip;
-    return Arrays.stream(parts).skip(skip).limit(limit).collect(Collectors.joining("."));
+    if (start > lastSlash) {
+      // A class in the root of a versioned directory
+      return "";
+    }
+    return zipEntryName.substring(start, lastSlash).replace('/', '.');
   }
 
-  private boolean isNumericVersion(String part) {
+  private static boolean isNumericVersion(String part) {
     return IS_NUMERIC_VERSION.test(part);
   }
+
+  private interface Indexer {
+    PerJarIndexResults index(Path path) throws IOException;
+  }
+
+  /**
+   * Collects the packages of the class entries in a jar. Classes in the same package are normally
+   * next to each other, so we only work out the package name when the directory changes.
+   */
+  private static class PackageCollector {
+    private static final String MODULE_INFO = "module-info.class";
+
+    private final SortedSet<String> packages = new TreeSet<>();
+    private String previous;
+    private int previousSlash;
+
+    void add(String name) {
+      if (!name.endsWith(".class")) {
+        return;
+      }
+      int lastSlash = name.lastIndexOf('/');
+      if (name.length() - lastSlash - 1 == MODULE_INFO.length()
+          && name.startsWith(MODULE_INFO, lastSlash + 1)) {
+        return;
+      }
+      if (previous != null
+          && lastSlash == previousSlash
+          && name.regionMatches(0, previous, 0, lastSlash)) {
+        return;
+      }
+
+      packages.add(extractPackageName(name));
+      previous = name;
+      previousSlash = lastSlash;
+    }
+
+    SortedSet<String> getPackages() {
+      return packages;
+    }
+  }
 }
@@ -0,0 +1,195 @@
+// Copyright 2024 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.github.bazelbuild.rules_jvm_external.jar;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.StringTokenizer;
+import java.util.jar.Attributes;
+import java.util.jar.Manifest;
+
+/**
+ * Amends the manifest of a jar using the {@code --manifest-entry}, {@code --remove-entry} and
+ * {@code --make-safe} flags shared by the tools that write jars.
+ */
+class ManifestEntries {
+
+  static final Attributes.Name AUTOMATIC_MODULE_NAME = new Attributes.Name("Automatic-Module-Name");
+
+  // Collected from https://docs.oracle.com/javase/specs/jls/se11/html/jls-3.html#jls-Keyword
+  private static final Collection<String> ILLEGAL_PACKAGE_NAMES =
+      Collections.unmodifiableCollection(
+          Arrays.asList(
+              "abstract",
+              "assert",
+              "boolean",
+              "break",
+              "byte",
+              "case",
+              "catch",
+              "char",
+              "class",
+              "const",
+              "continue",
+              "default",
+              "do",
+              "double",
+              "else",
+              "enum",
+              "extends",
+              "final",
+              "finally",
+              "float",
+              "for",
+              "goto",
+              "if",
+              "implements",
+              "import",
+              "instanceof",
+              "int",
+              "interface",
+              "long",
+              "native",
+              "new",
+              "package",
+              "private",
+              "protected",
+              "public",
+              "return",
+              "short",
+              "static",
+              "strictfp",
+              "super",
+              "switch",
+              "synchronized",
+              "this",
+              "throw",
+              "throws",
+              "transient",
+              "try",
+              "void",
+              "volatile",
+              "while",
+              "_",
+
+              // Additionally, these can't be used in identifiers:
+              // https://docs.oracle.com/javase/specs/jls/se11/html/jls-3.html#jls-Identifier
+              "false",
+              "true",
+              "null",
+              "var"));
+
+  private ManifestEntries() {
+    // Utility methods
+  }
+
+  /**
+   * Amend the main attributes of the {@code manifest} of {@code jar}.
+   *
+   * @param toAdd attributes to add, each in the form {@code name:value}.
+   * @param toRemove names of attributes to remove.
+   * @param makeSafe whether to remove an {@code Automatic-Module-Name} that the module system
+   *     would reject.
+   */
+  static void amend(
+      Path jar, Manifest manifest, List<String> toAdd, List<String> toRemove, boolean makeSafe) {
+    toAdd.forEach(
+        manifestEntry -> {
+          String[] manifestEntryParts = manifestEntry.split(":", 2);
+          manifest
+              .getMainAttributes()
+              .put(new Attributes.Name(manifestEntryParts[0]), manifestEntryParts[1]);
+        });
+    toRemove.forEach(name -> manifest.getMainAttributes().remove(new Attributes.Name(name)));
+
+    if (makeSafe) {
+      checkAutomaticModuleName(jar, manifest);
+    }
+  }
+
+  private static Manifest checkAutomaticModuleName(Path jar, Manifest manifest) {
+    if (!manifest.getMainAttributes().containsKey(AUTOMATIC_MODULE_NAME)) {
+      return manifest;
+    }
+
+    // The automatic module name must be a valid java package name. What is a valid java package
+    // name?
+    // https://docs.oracle.com/javase/specs/jls/se11/html/jls-7.html#jls-7.4 has the answer
+    String name = manifest.getMainAttributes().getValue(AUTOMATIC_MODULE_NAME);
+    if (name == null || name.isEmpty()) {
+      return removeEntryAndPrintWarning(
+          manifest,
+          AUTOMATIC_MODULE_NAME,
+          "An empty automatic module was detected. This is not allowed by the java module system: "
+              + jar.getFileName());
+    }
+
+    StringTokenizer tokenizer = new StringTokenizer(name, ".");
+    while (tokenizer.hasMoreTokens()) {
+      String part = tokenizer.nextToken().trim();
+      if (part.isEmpty()) {
+        return removeEntryAndPrintWarning(
+            manifest,
+            AUTOMATIC_MODULE_NAME,
+            String.format(
+                "Automatic module name '%s' contains an empty part: %s", name, jar.getFileName()));
+      }
+
+      if (!Character.isJavaIdentifierStart(part.charAt(0))) {
+        return removeEntryAndPrintWarning(
+            manifest,
+            AUTOMATIC_MODULE_NAME,
+            String.format(
+                "Automatic module name '%s' does not start with a character a java package name can"
+                    + " start with ('%s'): %s",
+                name, part, jar.getFileName()));
+      }
+
+      for (int i = 1; i < part.length(); i++) {
+        if (ILLEGAL_PACKAGE_NAMES.contains(part)) {
+          return removeEntryAndPrintWarning(
+              manifest,
+              AUTOMATIC_MODULE_NAME,
+              String.format(
+                  "Automatic module name '%s' contains reserved java keyword ('%s'): %s",
+                  name, part, jar.getFileName()));
+        }
+
+        if (!Character.isJavaIdentifierPart(part.charAt(i))) {
+          return removeEntryAndPrintWarning(
+              manifest,
+              AUTOMATIC_MODULE_NAME,
+              String.format(
+                  "Automatic module name '%s' contains a character ('%s') that may not be used in a"
+                      + " java identifier: %s",
+                  name, part.charAt(i), jar.getFileName()));
+        }
+      }
+    }
+
+    return manifest;
+  }
+
+  private static Manifest removeEntryAndPrintWarning(
+      Manifest manifest, Attributes.Name key, String warning) {
+    manifest.getMainAttributes().remove(key);
+    // We want this warning to be printed to the screen
+    System.err.println(warning);
+    return manifest;
+  }
+}
@@ -19,11 +19,13 @@ package com.github.bazelbuild.rules_jvm_external.jar;
 
 import static com.github.bazelbuild.rules_jvm_external.jar.DuplicateEntryStrategy.LAST_IN_WINS;
 import static java.util.zip.Deflater.BEST_COMPRESSION;
-import static java.util.zip.ZipOutputStream.DEFLATED;
 
 import com.github.bazelbuild.rules_jvm_external.ByteStreams;
-import com.github.bazelbuild.rules_jvm_external.zip.StableZipEntry;
-import java.io.BufferedInputStream;
+import com.github.bazelbuild.rules_jvm_external.worker.PersistentWorker;
+import com.github.bazelbuild.rules_jvm_external.zip.RawZipEntry;
+import com.github.bazelbuild.rules_jvm_external.zip.RawZipFile;
+import com.github.bazelbuild.rules_jvm_external.zip.RawZipFilePool;
+import com.github.bazelbuild.rules_jvm_external.zip.StableZipWriter;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -46,22 +48,40 @@ import java.util.TreeMap;
 import java.util.jar.Attributes;
 import java.util.jar.JarOutputStream;
 import java.util.jar.Manifest;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
-import java.util.zip.ZipInputStream;
 
 public class MergeJars {
 
+  // Deploy jars may be merged from hundreds of sources, and we'd rather not run out of file handles
+  private static final int MAX_OPEN_SOURCES = 128;
+
   public static void main(String[] args) throws IOException {
+    if (PersistentWorker.isPersistentWorker(args)) {
+      PersistentWorker.run(MergeJars::run);
+      return;
+    }
+    run(PersistentWorker.expandParamFiles(args));
+  }
+
+  private static void run(String[] args) throws IOException {
     Path out = null;
     // Insertion order may matter
     Set<Path> sources = new LinkedHashSet<>();
     Set<Path> excludes = new HashSet<>();
     DuplicateEntryStrategy onDuplicate = LAST_IN_WINS;
+    // By default, entries that are already deflated are copied across without being recompressed.
+    boolean recompress = false;
+    // Amendments to the merged manifest, with the same meaning as for `AddJarManifestEntry`
+    boolean makeSafe = false;
+    List<String> manifestEntries = new ArrayList<>();
+    List<String> removeEntries = new ArrayList<>();
 
     for (int i = 0; i < args.length; i++) {
       switch (args[i]) {
         case "--compression":
+          // As with singlejar, this means "compress everything"
+          recompress = true;
+          break;
+
         case "--normalize":
           // ignore
           break;
@@ -74,10 +94,22 @@ public class MergeJars {
           excludes.add(isValid(Paths.get(args[++i])));
           break;
 
+        case "--make-safe":
+          makeSafe = true;
+          break;
+
+        case "--manifest-entry":
+          manifestEntries.add(args[++i]);
+          break;
+
         case "--output":
           out = Paths.get(args[++i]);
           break;
 
+        case "--remove-entry":
+          removeEntries.add(args[++i]);
+          break;
+
         case "--sources":
           sources.add(isValid(Paths.get(args[++i])));
           break;
@@ -89,7 +121,8 @@ public class MergeJars {
     }
 
     Objects.requireNonNull(out, "Output path must be set.");
-    if (sources.isEmpty()) {
+    boolean amendManifest = makeSafe || !manifestEntries.isEmpty() || !removeEntries.isEmpty();
+    if (sources.isEmpty() && !amendManifest) {
       // Just write an empty jar and leave
       try (OutputStream fos = Files.newOutputStream(out);
           JarOutputStream jos = new JarOutputStream(fos)) {
@@ -101,6 +134,31 @@ public class MergeJars {
     // Remove any jars from sources that we've been told to exclude
     sources.removeIf(excludes::contains);
 
+    try (RawZipFilePool pool = new RawZipFilePool(MAX_OPEN_SOURCES)) {
+      merge(
+          pool,
+          sources,
+          excludes,
+          out,
+          onDuplicate,
+          recompress,
+          manifestEntries,
+          removeEntries,
+          makeSafe);
+    }
+  }
+
+  private static void merge(
+      RawZipFilePool pool,
+      Set<Path> sources,
+      Set<Path> excludes,
+      Path out,
+      DuplicateEntryStrategy onDuplicate,
+      boolean recompress,
+      List<String> manifestEntries,
+      List<String> removeEntries,
+      boolean makeSafe)
+      throws IOException {
     // We would love to keep things simple by expanding all the input jars into
     // a single directory, but this isn't possible since one jar may contain a
     // file with the same name as a directory in another. *sigh* Instead, what
@@ -116,50 +174,53 @@ public class MergeJars {
     // Ultimately, we want the entries in the output zip to be sorted
     // so that we have a deterministic output.
     Map<String, Path> fileToSourceJar = new TreeMap<>();
-    Map<String, byte[]> fileHashCodes = new HashMap<>();
+    Map<String, EntryFingerprint> fileFingerprints = new HashMap<>();
 
+    // Everything we need to know about each source is in its central directory, so each source is
+    // read once, and its entries are copied from wherever they are when the output is written.
     for (Path source : sources) {
-      try (InputStream fis = Files.newInputStream(source);
-          ZipInputStream zis = new ZipInputStream(fis)) {
-
-        ZipEntry entry;
-        while ((entry = zis.getNextEntry()) != null) {
-          if ("META-INF/MANIFEST.MF".equals(entry.getName())) {
-            Manifest other = new Manifest(zis);
-            manifest = merge(manifest, other);
-            continue;
+      RawZipFile zip = pool.get(source);
+      for (RawZipEntry entry : zip.getEntries()) {
+        if ("META-INF/MANIFEST.MF".equals(entry.getName())) {
+          try (InputStream is = zip.getInputStream(entry)) {
+            manifest = merge(manifest, new Manifest(is));
           }
+          continue;
+        }
 
-          if ("META-INF/".equals(entry.getName())
-              || (!entry.getName().startsWith("META-INF/")
-                  && excludedPaths.contains(entry.getName()))) {
-            continue;
-          }
+        if ("META-INF/".equals(entry.getName())
+            || (!entry.getName().startsWith("META-INF/")
+                && excludedPaths.contains(entry.getName()))) {
+          continue;
+        }
 
-          if (entry.getName().startsWith("META-INF/services/") && !entry.isDirectory()) {
-            String servicesName = entry.getName().substring("META-INF/services/".length());
-            List<String> services =
-                allServices.computeIfAbsent(servicesName, key -> new ArrayList<>());
-            services.add(new String(ByteStreams.toByteArray(zis)));
-            continue;
+        if (entry.getName().startsWith("META-INF/services/") && !entry.isDirectory()) {
+          String servicesName = entry.getName().substring("META-INF/services/".length());
+          List<String> services =
+              allServices.computeIfAbsent(servicesName, key -> new ArrayList<>());
+          try (InputStream is = zip.getInputStream(entry)) {
+            services.add(new String(ByteStreams.toByteArray(is)));
           }
+          continue;
+        }
 
-          if (!entry.isDirectory()) {
-            // Duplicate files, however may not be. We need the hash to determine
-            // whether we should do anything.
-            byte[] hash = hash(zis);
-
-            if (!fileToSourceJar.containsKey(entry.getName())) {
+        if (!entry.isDirectory()) {
+          // Duplicate files, however may not be. The fingerprint determines whether we
+          // should do anything, and only reads the file if its size and CRC aren't enough.
+          EntryFingerprint fingerprint =
+              new EntryFingerprint(
+                  entry.getSize(), entry.getCrc(), () -> hash(pool.get(source), entry));
+
+          if (!fileToSourceJar.containsKey(entry.getName())) {
+            fileToSourceJar.put(entry.getName(), source);
+            fileFingerprints.put(entry.getName(), fingerprint);
+          } else {
+            EntryFingerprint original = fileFingerprints.get(entry.getName());
+            boolean replace =
+                onDuplicate.isReplacingCurrent(entry.getName(), original, fingerprint);
+            if (replace) {
               fileToSourceJar.put(entry.getName(), source);
-              fileHashCodes.put(entry.getName(), hash);
-            } else {
-              byte[] originalHashCode = fileHashCodes.get(entry.getName());
-              boolean replace =
-                  onDuplicate.isReplacingCurrent(entry.getName(), originalHashCode, hash);
-              if (replace) {
-                fileToSourceJar.put(entry.getName(), source);
-                fileHashCodes.put(entry.getName(), hash);
-              }
+              fileFingerprints.put(entry.getName(), fingerprint);
             }
           }
         }
@@ -170,6 +231,8 @@ public class MergeJars {
     // Bazel labels are an internal detail of the project producing the merged
     // jar and not useful for consumers.
     manifest.getMainAttributes().remove(new Attributes.Name("Target-Label"));
+    // Stamping the manifest here saves rewriting the whole jar afterwards just to change it.
+    ManifestEntries.amend(out, manifest, manifestEntries, removeEntries, makeSafe);
 
     // Now create the output jar
     Files.createDirectories(out.getParent());
@@ -177,47 +240,31 @@ public class MergeJars {
     Set<String> createdDirectories = new HashSet<>();
 
     try (OutputStream os = Files.newOutputStream(out);
-        JarOutputStream jos = new JarOutputStream(os)) {
-      jos.setMethod(DEFLATED);
-      jos.setLevel(BEST_COMPRESSION);
+        StableZipWriter writer = new StableZipWriter(os)) {
+      writer.setLevel(BEST_COMPRESSION);
 
       // Write the manifest by hand to ensure the date is good
-      ZipEntry entry = new StableZipEntry("META-INF/");
-      jos.putNextEntry(entry);
-      jos.closeEntry();
-      createdDirectories.add(entry.getName());
+      writer.putDirectory("META-INF/");
+      createdDirectories.add("META-INF/");
 
-      entry = new StableZipEntry("META-INF/MANIFEST.MF");
       ByteArrayOutputStream bos = new ByteArrayOutputStream();
       manifest.write(bos);
-      entry.setSize(bos.size());
-      jos.putNextEntry(entry);
-      jos.write(bos.toByteArray());
-      jos.closeEntry();
+      writer.putEntry("META-INF/MANIFEST.MF", bos.toByteArray());
 
       if (!allServices.isEmpty()) {
         if (!createdDirectories.contains("META-INF/services/")) {
-          entry = new StableZipEntry("META-INF/services/");
-          jos.putNextEntry(entry);
-          jos.closeEntry();
-          createdDirectories.add(entry.getName());
+          writer.putDirectory("META-INF/services/");
+          createdDirectories.add("META-INF/services/");
         }
         for (Map.Entry<String, List<String>> kv : allServices.entrySet()) {
-          entry = new StableZipEntry("META-INF/services/" + kv.getKey());
           bos = new ByteArrayOutputStream();
 
           bos.write(String.join("\n\n", kv.getValue()).getBytes());
           bos.write("\n".getBytes());
-          entry.setSize(bos.size());
-          jos.putNextEntry(entry);
-          jos.write(bos.toByteArray());
-          jos.closeEntry();
+          writer.putEntry("META-INF/services/" + kv.getKey(), bos.toByteArray());
         }
       }
 
-      Path previousSource = sources.isEmpty() ? null : sources.iterator().next();
-      ZipFile source = previousSource == null ? null : new ZipFile(previousSource.toFile());
-
       // We should never enter this loop without there being any sources
       for (Map.Entry<String, Path> pathAndSource : fileToSourceJar.entrySet()) {
         // Get the original entry
@@ -231,45 +278,35 @@ public class MergeJars {
           name = name.substring(1);
         }
 
-        createDirectories(jos, name, createdDirectories);
+        createDirectories(writer, name, createdDirectories);
 
         if (createdDirectories.contains(name)) {
           continue;
         }
 
-        if (!Objects.equals(previousSource, pathAndSource.getValue())) {
-          if (source != null) {
-            source.close();
-          }
-          source = new ZipFile(pathAndSource.getValue().toFile());
-          previousSource = pathAndSource.getValue();
-        }
-
-        ZipEntry original = source.getEntry(name);
+        RawZipFile source = pool.get(pathAndSource.getValue());
+        RawZipEntry original = source.getEntry(name);
         if (original == null) {
           continue;
         }
 
-        ZipEntry je = new StableZipEntry(name);
-        jos.putNextEntry(je);
-
-        try (InputStream is = source.getInputStream(original)) {
-          ByteStreams.copy(is, jos);
+        if (recompress) {
+          try (InputStream is = source.getInputStream(original)) {
+            writer.putEntry(name, is);
+          }
+        } else {
+          writer.copyEntry(name, source, original);
         }
-        jos.closeEntry();
-      }
-      if (source != null) {
-        source.close();
       }
     }
   }
 
-  private static void createDirectories(JarOutputStream jos, String name, Set<String> createdDirs)
-      throws IOException {
+  private static void createDirectories(
+      StableZipWriter writer, String name, Set<String> createdDirs) throws IOException {
     if (!name.endsWith("/")) {
       int slashIndex = name.lastIndexOf('/');
       if (slashIndex != -1) {
-        createDirectories(jos, name.substring(0, slashIndex + 1), createdDirs);
+        createDirectories(writer, name.substring(0, slashIndex + 1), createdDirs);
       }
       return;
     }
@@ -288,9 +325,7 @@ public class MergeJars {
         continue;
       }
 
-      ZipEntry entry = new StableZipEntry(newPath);
-      jos.putNextEntry(entry);
-      jos.closeEntry();
+      writer.putDirectory(newPath);
       createdDirs.add(newPath);
     }
   }
@@ -299,11 +334,9 @@ public class MergeJars {
     Set<String> paths = new HashSet<>();
 
     for (Path exclude : excludes) {
-      try (InputStream is = Files.newInputStream(exclude);
-          BufferedInputStream bis = new BufferedInputStream(is);
-          ZipInputStream jis = new ZipInputStream(bis)) {
-        ZipEntry entry;
-        while ((entry = jis.getNextEntry()) != null) {
+      // Only the names are needed, and those are all in the central directory
+      try (RawZipFile zip = new RawZipFile(exclude)) {
+        for (RawZipEntry entry : zip.getEntries()) {
           if (entry.isDirectory()) {
             continue;
           }
@@ -351,18 +384,18 @@ public class MergeJars {
     return into;
   }
 
-  private static byte[] hash(InputStream inputStream) {
-    try {
+  private static byte[] hash(RawZipFile zip, RawZipEntry entry) throws IOException {
+    try (InputStream inputStream = zip.getInputStream(entry)) {
       MessageDigest digest = MessageDigest.getInstance("SHA-1");
 
-      byte[] buf = new byte[100 * 1024];
+      byte[] buf = new byte[8192];
       int read;
 
       while ((read = inputStream.read(buf)) != -1) {
         digest.update(buf, 0, read);
       }
       return digest.digest();
-    } catch (IOException | NoSuchAlgorithmException e) {
+    } catch (NoSuchAlgorithmException e) {
       throw new RuntimeException(e);
     }
   }
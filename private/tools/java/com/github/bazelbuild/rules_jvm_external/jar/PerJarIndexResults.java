@@ -6,11 +6,21 @@ import java.util.SortedSet;
 public class PerJarIndexResults {
   private final SortedSet<String> packages;
   private final SortedMap<String, SortedSet<String>> serviceImplementations;
+  // Only set when the jar was hashed as it was indexed
+  private final String sha256;
 
   public PerJarIndexResults(
       SortedSet<String> packages, SortedMap<String, SortedSet<String>> serviceImplementations) {
+    this(packages, serviceImplementations, null);
+  }
+
+  public PerJarIndexResults(
+      SortedSet<String> packages,
+      SortedMap<String, SortedSet<String>> serviceImplementations,
+      String sha256) {
     this.packages = packages;
     this.serviceImplementations = serviceImplementations;
+    this.sha256 = sha256;
   }
 
   public SortedSet<String> getPackages() {
@@ -20,4 +30,8 @@ public class PerJarIndexResults {
   public SortedMap<String, SortedSet<String>> getServiceImplementations() {
     return this.serviceImplementations;
   }
+
+  public String getSha256() {
+    return this.sha256;
+  }
 }
@@ -21,11 +21,10 @@ import static java.lang.Runtime.Version;
 import static java.nio.charset.StandardCharsets.UTF_8;
 
 import com.github.bazelbuild.rules_jvm_external.ByteStreams;
-import com.github.bazelbuild.rules_jvm_external.zip.StableZipEntry;
+import com.github.bazelbuild.rules_jvm_external.zip.StableZipWriter;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.StringWriter;
 import java.io.UncheckedIOException;
@@ -45,7 +44,6 @@ import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
-import java.util.zip.ZipOutputStream;
 import javax.tools.DocumentationTool;
 import javax.tools.JavaFileObject;
 import javax.tools.StandardJavaFileManager;
@@ -135,7 +133,7 @@ public class JavadocJarMaker {
       // True if we're just exporting a set of modules
       if (sources.isEmpty()) {
         try (OutputStream os = Files.newOutputStream(out);
-            ZipOutputStream zos = new ZipOutputStream(os)) {
+            StableZipWriter zip = new StableZipWriter(os)) {
           // It's enough to just create the thing
         }
 
@@ -203,8 +201,9 @@ public class JavadocJarMaker {
         Files.createFile(generatedElementList);
       }
 
+      // Entries are compressed in parallel, but written in this sorted order.
       try (OutputStream os = Files.newOutputStream(out);
-          ZipOutputStream zos = new ZipOutputStream(os);
+          StableZipWriter zip = new StableZipWriter(os);
           Stream<Path> walk = Files.walk(outputTo)) {
 
         walk.sorted(Comparator.naturalOrder())
@@ -217,17 +216,10 @@ public class JavadocJarMaker {
                   try {
                     if (Files.isDirectory(path)) {
                       String name = outputTo.relativize(path) + "/";
-                      ZipEntry entry = new StableZipEntry(name);
-                      zos.putNextEntry(entry);
-                      zos.closeEntry();
+                      zip.putDirectory(name);
                     } else {
                       String name = outputTo.relativize(path).toString();
-                      ZipEntry entry = new StableZipEntry(name);
-                      zos.putNextEntry(entry);
-                      try (InputStream is = Files.newInputStream(path)) {
-                        ByteStreams.copy(is, zos);
-                      }
-                      zos.closeEntry();
+                      zip.putEntry(name, Files.readAllBytes(path));
                     }
                   } catch (IOException e) {
                     throw new UncheckedIOException(e);
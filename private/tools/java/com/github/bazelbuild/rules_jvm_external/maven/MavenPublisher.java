@@ -17,39 +17,51 @@
 
 package com.github.bazelbuild.rules_jvm_external.maven;
 
-import static com.github.bazelbuild.rules_jvm_external.maven.MavenSigning.gpg_sign;
-import static com.github.bazelbuild.rules_jvm_external.maven.MavenSigning.in_memory_pgp_sign;
 import static java.nio.charset.StandardCharsets.US_ASCII;
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.READ;
 import static java.util.concurrent.TimeUnit.MINUTES;
 
 import com.github.bazelbuild.rules_jvm_external.ByteStreams;
+import com.github.bazelbuild.rules_jvm_external.Checksums;
+import com.github.bazelbuild.rules_jvm_external.DaemonThreadFactory;
 import com.google.auth.Credentials;
 import com.google.auth.oauth2.GoogleCredentials;
 import com.google.cloud.WriteChannel;
+import com.google.cloud.storage.Blob;
+import com.google.cloud.storage.BlobId;
 import com.google.cloud.storage.BlobInfo;
 import com.google.cloud.storage.Storage;
 import com.google.cloud.storage.StorageOptions;
 import com.google.common.base.Splitter;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
-import java.math.BigInteger;
+import java.io.UncheckedIOException;
 import java.net.HttpURLConnection;
 import java.net.URI;
+import java.net.URISyntaxException;
 import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
@@ -57,13 +69,45 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeoutException;
 import java.util.logging.Logger;
+import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
 
 public class MavenPublisher {
 
   private static final Logger LOG = Logger.getLogger(MavenPublisher.class.getName());
-  private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(1);
+  private static final UploadScheduler SCHEDULER = UploadScheduler.fromEnvironment();
+  // Shared by every upload, so connections are reused. HTTP/2 is used where the server supports it.
+  private static final HttpClient HTTP_CLIENT =
+      HttpClient.newBuilder().version(HttpClient.Version.HTTP_2).build();
+  private static final List<String> CHECKSUM_ALGORITHMS =
+      List.of(Checksums.MD5, Checksums.SHA_1, Checksums.SHA_256, Checksums.SHA_512);
+  // When set, artifacts whose remote checksum matches the local one aren't uploaded again
+  private static final boolean SKIP_UNCHANGED =
+      Boolean.parseBoolean(System.getenv("MAVEN_SKIP_UNCHANGED"));
+  private static final UploadSummary SUMMARY = new UploadSummary();
+  // Creating a cloud client means resolving credentials and setting up a connection pool, so each
+  // is created once and shared by every upload
+  private static final Supplier<S3Client> S3_CLIENT = Suppliers.memoize(S3Client::create);
+  private static final Supplier<Storage> GCS_CLIENT =
+      Suppliers.memoize(() -> StorageOptions.getDefaultInstance().getService());
+  // Files at least this large are uploaded to S3 and GCS as several parts, in parallel
+  private static final long MULTIPART_THRESHOLD = 32 * 1024 * 1024;
+  private static final long MIN_PART_SIZE = 8 * 1024 * 1024;
+  private static final int S3_MAX_PARTS = 10000;
+  private static final int GCS_MAX_COMPONENTS = 32;
+  private static final ExecutorService PART_EXECUTOR =
+      Executors.newFixedThreadPool(
+          SCHEDULER.getConnectionsPerHost(),
+          new DaemonThreadFactory("maven-upload-part"));
   private static final String[] SUPPORTED_SCHEMES = {
     "file:/", "https://", "gs://", "s3://", "artifactregistry://"
   };
@@ -98,14 +142,14 @@ public class MavenPublisher {
     Path pom = Paths.get(args[1]);
     Path mainArtifact = getPathIfSet(args[2]);
 
-    try {
+    try (MavenSigning.SigningService signing = new MavenSigning.SigningService(signingMetadata)) {
       List<CompletableFuture<Void>> futures = new ArrayList<>();
-      futures.add(upload(repo, credentials, coords, ".pom", pom, signingMetadata));
+      futures.add(upload(repo, credentials, coords, ".pom", pom, signing));
 
       if (mainArtifact != null) {
         String ext =
             com.google.common.io.Files.getFileExtension(mainArtifact.getFileName().toString());
-        futures.add(upload(repo, credentials, coords, "." + ext, mainArtifact, signingMetadata));
+        futures.add(upload(repo, credentials, coords, "." + ext, mainArtifact, signing));
       }
 
       if (args.length > 3 && !args[3].isEmpty()) {
@@ -122,15 +166,17 @@ public class MavenPublisher {
                   coords,
                   String.format("-%s.%s", classifier, ext),
                   artifact,
-                  signingMetadata));
+                  signing));
         }
       }
 
       CompletableFuture<Void> all =
           CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
       all.get(30, MINUTES);
+      LOG.info(SUMMARY.toString());
     } finally {
-      EXECUTOR.shutdown();
+      SCHEDULER.shutdown();
+      PART_EXECUTOR.shutdown();
     }
   }
 
@@ -156,8 +202,8 @@ public class MavenPublisher {
       Coordinates coords,
       String append,
       Path item,
-      MavenSigning.SigningMetadata signingMetadata)
-      throws IOException, InterruptedException {
+      MavenSigning.SigningService signing)
+      throws IOException {
 
     String base =
         String.format(
@@ -169,100 +215,192 @@ public class MavenPublisher {
             coords.artifactId,
             coords.version);
 
-    byte[] toHash = Files.readAllBytes(item);
-    Path md5 = Files.createTempFile(item.getFileName().toString(), ".md5");
-    Files.write(md5, toMd5(toHash).getBytes(UTF_8));
+    String target = base + append;
 
-    Path sha1 = Files.createTempFile(item.getFileName().toString(), ".sha1");
-    Files.write(sha1, toSha1(toHash).getBytes(UTF_8));
+    // Calculate every checksum in one pass, without holding the whole artifact in memory. The
+    // checksums themselves are tiny, so they're uploaded straight from memory.
+    Map<String, String> checksums =
+        Checksums.calculate(item, CHECKSUM_ALGORITHMS.toArray(new String[0]));
 
-    Path sha256 = Files.createTempFile(item.getFileName().toString(), ".sha256");
-    Files.write(sha256, toSha256(toHash).getBytes(UTF_8));
+    CompletableFuture<Boolean> unchanged = isUnchanged(target, credentials, checksums);
 
-    Path sha512 = Files.createTempFile(item.getFileName().toString(), ".sha512");
-    Files.write(sha512, toSha512(toHash).getBytes(UTF_8));
+    // The checksums are only published once the artifact is in place, so a matching remote
+    // checksum always means the remote artifact is complete.
+    CompletableFuture<Void> artifactUpload =
+        uploadUnlessUnchanged(unchanged, target, credentials, item);
 
     List<CompletableFuture<?>> uploads = new ArrayList<>();
-    uploads.add(upload(String.format("%s%s", base, append), credentials, item));
-    uploads.add(upload(String.format("%s%s.md5", base, append), credentials, md5));
-    uploads.add(upload(String.format("%s%s.sha1", base, append), credentials, sha1));
-    uploads.add(upload(String.format("%s%s.sha256", base, append), credentials, sha256));
-    uploads.add(upload(String.format("%s%s.sha512", base, append), credentials, sha512));
-
-    MavenSigning.SigningMethod signingMethod = signingMetadata.signingMethod;
-    if (signingMethod.equals(MavenSigning.SigningMethod.GPG)) {
-      uploads.add(upload(String.format("%s%s.asc", base, append), credentials, gpg_sign(item)));
-      uploads.add(upload(String.format("%s%s.md5.asc", base, append), credentials, gpg_sign(md5)));
-      uploads.add(
-          upload(String.format("%s%s.sha1.asc", base, append), credentials, gpg_sign(sha1)));
-      uploads.add(
-          upload(String.format("%s%s.sha256.asc", base, append), credentials, gpg_sign(sha256)));
-      uploads.add(
-          upload(String.format("%s%s.sha512.asc", base, append), credentials, gpg_sign(sha512)));
-    } else if (signingMethod.equals(MavenSigning.SigningMethod.PGP)) {
-      uploads.add(
-          upload(
-              String.format("%s%s.asc", base, append),
-              credentials,
-              in_memory_pgp_sign(
-                  item, signingMetadata.signingKey, signingMetadata.signingPassword)));
-      uploads.add(
-          upload(
-              String.format("%s%s.md5.asc", base, append),
-              credentials,
-              in_memory_pgp_sign(
-                  md5, signingMetadata.signingKey, signingMetadata.signingPassword)));
+    uploads.add(artifactUpload);
+    if (signing.isSigning()) {
       uploads.add(
-          upload(
-              String.format("%s%s.sha1.asc", base, append),
+          uploadUnlessPresent(
+              unchanged,
+              target + ".asc",
               credentials,
-              in_memory_pgp_sign(
-                  sha1, signingMetadata.signingKey, signingMetadata.signingPassword)));
-      uploads.add(
-          upload(
-              String.format("%s%s.sha256.asc", base, append),
-              credentials,
-              in_memory_pgp_sign(
-                  sha256, signingMetadata.signingKey, signingMetadata.signingPassword)));
+              () -> signing.sign(item).thenApply(Payload::of)));
+    }
+
+    for (String algorithm : CHECKSUM_ALGORITHMS) {
+      String extension = RemoteChecksums.extensionOf(algorithm);
+      byte[] checksum = checksums.get(algorithm).getBytes(UTF_8);
       uploads.add(
-          upload(
-              String.format("%s%s.sha512.asc", base, append),
-              credentials,
-              in_memory_pgp_sign(
-                  sha512, signingMetadata.signingKey, signingMetadata.signingPassword)));
+          artifactUpload.thenCompose(
+              ignored ->
+                  uploadUnlessPresent(
+                      unchanged,
+                      target + extension,
+                      credentials,
+                      () -> CompletableFuture.completedFuture(Payload.of(checksum)))));
+
+      if (signing.isSigning()) {
+        // Signing needs the checksum to be in a file
+        Path checksumFile = Files.createTempFile(item.getFileName().toString(), extension);
+        Files.write(checksumFile, checksum);
+        uploads.add(
+            uploadUnlessPresent(
+                unchanged,
+                target + extension + ".asc",
+                credentials,
+                () -> signing.sign(checksumFile).thenApply(Payload::of)));
+      }
     }
 
     return CompletableFuture.allOf(uploads.toArray(new CompletableFuture<?>[0]));
   }
 
-  private static String toSha1(byte[] toHash) {
-    return toHexS("%040x", "SHA-1", toHash);
+  /**
+   * Whether the remote copy of {@code targetUrl} matches the local {@code checksums}. This is
+   * always false unless unchanged artifacts are being skipped.
+   */
+  private static CompletableFuture<Boolean> isUnchanged(
+      String targetUrl, Credentials credentials, Map<String, String> checksums) {
+    if (!SKIP_UNCHANGED) {
+      return CompletableFuture.completedFuture(false);
+    }
+    return SCHEDULER.submit(
+        targetUrl,
+        () -> RemoteChecksums.isUnchanged(url -> fetch(url, credentials), targetUrl, checksums));
+  }
+
+  private static CompletableFuture<Void> uploadUnlessUnchanged(
+      CompletableFuture<Boolean> unchanged, String targetUrl, Credentials credentials, Path item) {
+    return unchanged.thenCompose(
+        skip -> {
+          if (!skip) {
+            return upload(targetUrl, credentials, Payload.of(item));
+          }
+          LOG.info(String.format("Skipping upload of unchanged %s", targetUrl));
+          SUMMARY.skipped(Payload.of(item).size());
+          return CompletableFuture.completedFuture(null);
+        });
+  }
+
+  /**
+   * Upload a checksum or signature of an artifact. Release repositories refuse to overwrite files,
+   * so if the artifact was unchanged this is only uploaded when the remote repository doesn't have
+   * it yet, which completes any earlier publish that was interrupted part way through.
+   */
+  private static CompletableFuture<Void> uploadUnlessPresent(
+      CompletableFuture<Boolean> artifactUnchanged,
+      String targetUrl,
+      Credentials credentials,
+      Supplier<CompletableFuture<Payload>> payload) {
+    return artifactUnchanged
+        .thenCompose(
+            unchanged ->
+                unchanged
+                    ? SCHEDULER.submit(targetUrl, () -> fetch(targetUrl, credentials))
+                    : CompletableFuture.completedFuture(Optional.<byte[]>empty()))
+        .thenCompose(
+            remote -> {
+              if (remote.isPresent()) {
+                SUMMARY.skipped(remote.get().length);
+                return CompletableFuture.completedFuture(null);
+              }
+              return payload
+                  .get()
+                  .thenCompose(toUpload -> upload(targetUrl, credentials, toUpload));
+            });
   }
 
-  private static String toSha256(byte[] toHash) {
-    return toHexS("%064x", "SHA-256", toHash);
+  /** Fetch {@code targetUrl} from the remote repository, if it exists. */
+  private static Optional<byte[]> fetch(String targetUrl, Credentials credentials)
+      throws Exception {
+    if (targetUrl.startsWith("http://") || targetUrl.startsWith("https://")) {
+      return httpFetch(targetUrl, credentials);
+    } else if (targetUrl.startsWith("gs://")) {
+      return gcsFetch(targetUrl);
+    } else if (targetUrl.startsWith("s3://")) {
+      return s3Fetch(targetUrl);
+    } else if (targetUrl.startsWith("artifactregistry://")) {
+      return httpFetch(
+          "https://" + targetUrl.substring(19), GoogleCredentials.getApplicationDefault());
+    }
+
+    Path path = Paths.get(new URL(targetUrl).toURI());
+    return Files.exists(path) ? Optional.of(Files.readAllBytes(path)) : Optional.empty();
   }
 
-  private static String toSha512(byte[] toHash) {
-    return toHexS("%0128x", "SHA-512", toHash);
+  private static Optional<byte[]> httpFetch(String targetUrl, Credentials credentials)
+      throws IOException, InterruptedException {
+    URI uri = URI.create(targetUrl);
+    HttpRequest.Builder request = HttpRequest.newBuilder(uri).GET();
+    if ("http".equals(uri.getScheme())) {
+      request.version(HttpClient.Version.HTTP_1_1);
+    }
+    addCredentials(request, credentials);
+
+    HttpResponse<byte[]> response =
+        HTTP_CLIENT.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+    int code = response.statusCode();
+    if (code < 200 || code > 299) {
+      if (code != HttpURLConnection.HTTP_NOT_FOUND) {
+        LOG.fine(String.format("Unable to fetch %s (%s)%n", targetUrl, code));
+      }
+      return Optional.empty();
+    }
+    return Optional.of(response.body());
   }
 
-  private static String toMd5(byte[] toHash) {
-    return toHexS("%032x", "MD5", toHash);
+  private static Optional<byte[]> gcsFetch(String targetUrl) throws URISyntaxException {
+    Storage storage = GCS_CLIENT.get();
+    URI gsUri = new URI(targetUrl);
+    Blob blob = storage.get(BlobId.of(gsUri.getHost(), gsUri.getPath().substring(1)));
+    return blob == null ? Optional.empty() : Optional.of(blob.getContent());
   }
 
-  private static String toHexS(String fmt, String algorithm, byte[] toHash) {
+  private static Optional<byte[]> s3Fetch(String targetUrl) throws URISyntaxException {
+    S3Client s3Client = S3_CLIENT.get();
+    URI s3Uri = new URI(targetUrl);
     try {
-      MessageDigest digest = MessageDigest.getInstance(algorithm);
-      digest.update(toHash);
-      return String.format(fmt, new BigInteger(1, digest.digest()));
-    } catch (NoSuchAlgorithmException e) {
-      throw new RuntimeException(e);
+      return Optional.of(
+          s3Client
+              .getObjectAsBytes(
+                  GetObjectRequest.builder()
+                      .bucket(s3Uri.getHost())
+                      .key(s3Uri.getPath().substring(1))
+                      .build())
+              .asByteArray());
+    } catch (NoSuchKeyException e) {
+      return Optional.empty();
+    }
+  }
+
+  private static void addCredentials(HttpRequest.Builder request, Credentials credentials)
+      throws IOException {
+    if (credentials == null) {
+      return;
+    }
+    if (!credentials.hasRequestMetadataOnly()) {
+      throw new RuntimeException("Unsupported credentials");
+    }
+    if (credentials.hasRequestMetadata()) {
+      credentials.getRequestMetadata().forEach((k, l) -> l.forEach(v -> request.header(k, v)));
     }
   }
 
   private static CompletableFuture<Void> upload(
-      String targetUrl, Credentials credentials, Path toUpload) {
+      String targetUrl, Credentials credentials, Payload toUpload) {
     Callable<Void> callable;
     if (targetUrl.startsWith("http://") || targetUrl.startsWith("https://")) {
       callable = httpUpload(targetUrl, credentials, toUpload);
@@ -276,96 +414,78 @@ public class MavenPublisher {
       callable = writeFile(targetUrl, toUpload);
     }
 
-    CompletableFuture<Void> toReturn = new CompletableFuture<>();
-    EXECUTOR.submit(
-        () -> {
-          try {
-            callable.call();
-            toReturn.complete(null);
-          } catch (Exception e) {
-            toReturn.completeExceptionally(e);
-          }
-        });
-    return toReturn;
+    return SCHEDULER
+        .submit(targetUrl, callable)
+        .thenRun(() -> SUMMARY.uploaded(toUpload.size()));
   }
 
   private static Callable<Void> httpUpload(
-      String targetUrl, Credentials credentials, Path toUpload) {
+      String targetUrl, Credentials credentials, Payload toUpload) {
     return () -> {
       LOG.info(String.format("Uploading to %s", targetUrl));
-      URL url = new URL(targetUrl);
-
-      HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-      connection.setRequestMethod("PUT");
-      connection.setDoOutput(true);
-      if (credentials != null) {
-        if (!credentials.hasRequestMetadataOnly()) {
-          throw new RuntimeException("Unsupported credentials");
-        }
-        if (credentials.hasRequestMetadata()) {
-          credentials
-              .getRequestMetadata()
-              .forEach(
-                  (k, l) -> {
-                    l.forEach(v -> connection.addRequestProperty(k, v));
-                  });
-        }
-      }
-      connection.setRequestProperty("Content-Length", "" + Files.size(toUpload));
+      URI uri = URI.create(targetUrl);
 
-      try (OutputStream out = connection.getOutputStream()) {
-        try (InputStream is = Files.newInputStream(toUpload)) {
-          ByteStreams.copy(is, out);
-        }
+      HttpRequest.Builder request = HttpRequest.newBuilder(uri).PUT(toUpload.toBodyPublisher());
+      if ("http".equals(uri.getScheme())) {
+        // Avoid attempting an h2c upgrade, which not every server copes with
+        request.version(HttpClient.Version.HTTP_1_1);
+      }
+      addCredentials(request, credentials);
 
-        int code = connection.getResponseCode();
+      HttpResponse<String> response =
+          HTTP_CLIENT.send(request.build(), HttpResponse.BodyHandlers.ofString());
+      int code = response.statusCode();
 
-        if (code == HttpURLConnection.HTTP_UNAUTHORIZED) {
-          throw new RuntimeException(connection.getHeaderField("WWW-Authenticate"));
-        }
+      if (code == HttpURLConnection.HTTP_UNAUTHORIZED) {
+        throw new RuntimeException(
+            response.headers().firstValue("WWW-Authenticate").orElse("Unauthorized"));
+      }
 
-        if (code < 200 || code > 299) {
-          try (InputStream in = connection.getErrorStream()) {
-            String message;
-            if (in != null) {
-              String body = new String(ByteStreams.toByteArray(in));
-              message = String.format("Unable to upload %s (%s) %s", targetUrl, code, body);
-            } else {
-              message = String.format("Unable to upload %s (%s)", targetUrl, code);
-            }
-
-            throw new IOException(message);
-          }
+      if (code < 200 || code > 299) {
+        String body = response.body();
+        String message;
+        if (body != null && !body.isEmpty()) {
+          message = String.format("Unable to upload %s (%s) %s", targetUrl, code, body);
+        } else {
+          message = String.format("Unable to upload %s (%s)", targetUrl, code);
         }
+        throw new IOException(message);
       }
       LOG.info(String.format("Upload to %s complete.", targetUrl));
       return null;
     };
   }
 
-  private static Callable<Void> writeFile(String targetUrl, Path toUpload) {
+  private static Callable<Void> writeFile(String targetUrl, Payload toUpload) {
     return () -> {
       LOG.info(String.format("Copying %s to %s", toUpload, targetUrl));
       Path path = Paths.get(new URL(targetUrl).toURI());
       Files.createDirectories(path.getParent());
       Files.deleteIfExists(path);
-      Files.copy(toUpload, path);
+      try (InputStream is = toUpload.openStream()) {
+        Files.copy(is, path);
+      }
 
       return null;
     };
   }
 
-  private static Callable<Void> gcsUpload(String targetUrl, Path toUpload) {
+  private static Callable<Void> gcsUpload(String targetUrl, Payload toUpload) {
     return () -> {
-      Storage storage = StorageOptions.getDefaultInstance().getService();
+      Storage storage = GCS_CLIENT.get();
       URI gsUri = new URI(targetUrl);
       String bucketName = gsUri.getHost();
       String path = gsUri.getPath().substring(1);
 
       LOG.info(String.format("Copying %s to gs://%s/%s", toUpload, bucketName, path));
       BlobInfo blobInfo = BlobInfo.newBuilder(bucketName, path).build();
+      if (toUpload.size() >= MULTIPART_THRESHOLD) {
+        gcsCompositeUpload(storage, blobInfo, toUpload.getPath());
+        return null;
+      }
+
       try (WriteChannel writer = storage.writer(blobInfo);
-          InputStream is = Files.newInputStream(toUpload)) {
+          InputStream is = toUpload.openStream()) {
         ByteStreams.copy(is, Channels.newOutputStream(writer));
       }
 
@@ -373,21 +493,131 @@ public class MavenPublisher {
     };
   }
 
-  private static Callable<Void> s3upload(String targetUrl, Path toUpload) {
+  /**
+   * Upload {@code file} as several temporary objects in parallel, and then compose them into the
+   * target object.
+   */
+  private static void gcsCompositeUpload(Storage storage, BlobInfo target, Path file)
+      throws IOException {
+    List<MultipartUpload.Part> parts =
+        MultipartUpload.split(Files.size(file), MIN_PART_SIZE, GCS_MAX_COMPONENTS);
+    String prefix = String.format("%s.%s.part-", target.getName(), UUID.randomUUID());
+
+    try {
+      List<String> names =
+          MultipartUpload.uploadParts(
+              parts,
+              part -> {
+                String name = prefix + part.getNumber();
+                try (FileChannel channel = FileChannel.open(file, READ);
+                    WriteChannel writer =
+                        storage.writer(BlobInfo.newBuilder(target.getBucket(), name).build())) {
+                  long position = part.getOffset();
+                  long end = part.getOffset() + part.getLength();
+                  while (position < end) {
+                    long transferred = channel.transferTo(position, end - position, writer);
+                    if (transferred == 0 && position >= channel.size()) {
+                      throw new EOFException("Unexpected end of " + file);
+                    }
+                    position += transferred;
+                  }
+                }
+                return name;
+              },
+              PART_EXECUTOR);
+
+      storage.compose(
+          Storage.ComposeRequest.newBuilder().addSource(names).setTarget(target).build());
+    } finally {
+      for (MultipartUpload.Part part : parts) {
+        storage.delete(BlobId.of(target.getBucket(), prefix + part.getNumber()));
+      }
+    }
+  }
+
+  private static Callable<Void> s3upload(String targetUrl, Payload toUpload) {
     return () -> {
-      S3Client s3Client = S3Client.create();
+      S3Client s3Client = S3_CLIENT.get();
       URI s3Uri = new URI(targetUrl);
       String bucketName = s3Uri.getHost();
       String path = s3Uri.getPath().substring(1);
 
       LOG.info(String.format("Copying %s to s3://%s/%s", toUpload, bucketName, path));
-      s3Client.putObject(PutObjectRequest.builder().bucket(bucketName).key(path).build(), toUpload);
+      if (toUpload.size() >= MULTIPART_THRESHOLD) {
+        s3MultipartUpload(s3Client, bucketName, path, toUpload.getPath());
+        return null;
+      }
+
+      s3Client.putObject(
+          PutObjectRequest.builder().bucket(bucketName).key(path).build(),
+          toUpload.toRequestBody());
 
       return null;
     };
   }
 
-  private static Callable<Void> arUpload(String targetUrl, Path toUpload) {
+  /** Upload {@code file} using an S3 multipart upload, sending the parts in parallel. */
+  private static void s3MultipartUpload(S3Client s3Client, String bucketName, String key, Path file)
+      throws IOException {
+    String uploadId =
+        s3Client
+            .createMultipartUpload(
+                CreateMultipartUploadRequest.builder().bucket(bucketName).key(key).build())
+            .uploadId();
+
+    try {
+      List<CompletedPart> completed =
+          MultipartUpload.uploadParts(
+              MultipartUpload.split(Files.size(file), MIN_PART_SIZE, S3_MAX_PARTS),
+              part -> {
+                String eTag =
+                    s3Client
+                        .uploadPart(
+                            UploadPartRequest.builder()
+                                .bucket(bucketName)
+                                .key(key)
+                                .uploadId(uploadId)
+                                .partNumber(part.getNumber())
+                                .contentLength(part.getLength())
+                                .build(),
+                            RequestBody.fromBytes(readPart(file, part)))
+                        .eTag();
+                return CompletedPart.builder().partNumber(part.getNumber()).eTag(eTag).build();
+              },
+              PART_EXECUTOR);
+
+      s3Client.completeMultipartUpload(
+          CompleteMultipartUploadRequest.builder()
+              .bucket(bucketName)
+              .key(key)
+              .uploadId(uploadId)
+              .multipartUpload(CompletedMultipartUpload.builder().parts(completed).build())
+              .build());
+    } catch (IOException | RuntimeException e) {
+      // Otherwise, the parts we did upload are kept (and charged for) indefinitely
+      s3Client.abortMultipartUpload(
+          AbortMultipartUploadRequest.builder()
+              .bucket(bucketName)
+              .key(key)
+              .uploadId(uploadId)
+              .build());
+      throw e;
+    }
+  }
+
+  private static byte[] readPart(Path file, MultipartUpload.Part part) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(part.getLength()));
+    try (FileChannel channel = FileChannel.open(file, READ)) {
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer, part.getOffset() + buffer.position()) == -1) {
+          throw new EOFException("Unexpected end of " + file);
+        }
+      }
+    }
+    return buffer.array();
+  }
+
+  private static Callable<Void> arUpload(String targetUrl, Payload toUpload) {
     return () -> {
       Credentials cred = GoogleCredentials.getApplicationDefault();
       String url = "https://" + targetUrl.substring(19);
@@ -395,6 +625,57 @@ public class MavenPublisher {
     };
   }
 
+  /** The contents of an upload, which are either in a file or already in memory. */
+  private static class Payload {
+    private final Path path;
+    private final byte[] bytes;
+
+    private Payload(Path path, byte[] bytes) {
+      this.path = path;
+      this.bytes = bytes;
+    }
+
+    static Payload of(Path path) {
+      return new Payload(path, null);
+    }
+
+    static Payload of(byte[] bytes) {
+      return new Payload(null, bytes);
+    }
+
+    /** The file holding the contents, or {@code null} if they're in memory. */
+    Path getPath() {
+      return path;
+    }
+
+    long size() {
+      try {
+        return path != null ? Files.size(path) : bytes.length;
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    InputStream openStream() throws IOException {
+      return path != null ? Files.newInputStream(path) : new ByteArrayInputStream(bytes);
+    }
+
+    HttpRequest.BodyPublisher toBodyPublisher() throws IOException {
+      return path != null
+          ? HttpRequest.BodyPublishers.ofFile(path)
+          : HttpRequest.BodyPublishers.ofByteArray(bytes);
+    }
+
+    RequestBody toRequestBody() {
+      return path != null ? RequestBody.fromFile(path) : RequestBody.fromBytes(bytes);
+    }
+
+    @Override
+    public String toString() {
+      return path != null ? path.toString() : String.format("<%d bytes>", bytes.length);
+    }
+  }
+
   private static class Coordinates {
     private final String groupId;
     private final String artifactId;
@@ -1,5 +1,6 @@
 package com.github.bazelbuild.rules_jvm_external.maven;
 
+import com.github.bazelbuild.rules_jvm_external.DaemonThreadFactory;
 import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
@@ -9,6 +10,9 @@ import java.math.BigInteger;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.logging.Logger;
 import org.bouncycastle.bcpg.ArmoredOutputStream;
 import org.bouncycastle.bcpg.BCPGOutputStream;
@@ -34,8 +38,80 @@ public class MavenSigning {
   private static final int BUFFER = 4096;
   private static final Logger LOG = Logger.getLogger(MavenSigning.class.getName());
 
+  /** Signs files, returning the path of an armored, detached signature for each. */
+  protected interface Signer {
+    Path sign(Path toSign) throws IOException, InterruptedException;
+  }
+
+  /**
+   * Signs files on a bounded pool of threads, using the signing method chosen by the {@link
+   * SigningMetadata}. The signing key is prepared once, when the service is created, rather than
+   * for every file.
+   */
+  protected static class SigningService implements AutoCloseable {
+    private final Signer signer;
+    private final ExecutorService executor;
+
+    protected SigningService(SigningMetadata signingMetadata) throws IOException {
+      int threads;
+      switch (signingMetadata.signingMethod) {
+        case GPG:
+          // There's no way to have gpg sign several files with separate detached signatures in
+          // one run, so fork it for each file. Only run one at a time: gpg may need to prompt for
+          // the passphrase, and the output of each run would otherwise be interleaved. Signing
+          // still happens in the background, while other files are being uploaded.
+          this.signer = MavenSigning::gpg_sign;
+          threads = 1;
+          break;
+
+        case PGP:
+          this.signer =
+              new InMemoryPgpSigner(signingMetadata.signingKey, signingMetadata.signingPassword);
+          threads = Math.max(1, Runtime.getRuntime().availableProcessors());
+          break;
+
+        default:
+          this.signer = null;
+          threads = 1;
+          break;
+      }
+
+      this.executor = Executors.newFixedThreadPool(threads, new DaemonThreadFactory("maven-sign"));
+    }
+
+    protected boolean isSigning() {
+      return signer != null;
+    }
+
+    /** Sign {@code toSign} in the background, completing with the path of the signature. */
+    protected CompletableFuture<Path> sign(Path toSign) {
+      if (signer == null) {
+        throw new IllegalStateException("Signing has not been enabled");
+      }
+
+      CompletableFuture<Path> toReturn = new CompletableFuture<>();
+      executor.execute(
+          () -> {
+            try {
+              toReturn.complete(signer.sign(toSign));
+            } catch (Exception e) {
+              toReturn.completeExceptionally(e);
+            }
+          });
+      return toReturn;
+    }
+
+    @Override
+    public void close() {
+      executor.shutdown();
+    }
+  }
+
   /**
-   * This method is based on the following Gradle code: <a
+   * Signs files using a PGP key held in memory. The key is decrypted once, since deriving the key
+   * from the passphrase is deliberately slow, and may then be used from several threads.
+   *
+   * <p>This is based on the following Gradle code: <a
    * href="https://cs.android.com/android-studio/gradle/+/master:platforms/software/security/src/main/java/org/gradle/security/internal/pgp/BaseInMemoryPgpSignatoryProvider.java">...</a>
    * <a
    * href="https://cs.android.com/android-studio/gradle/+/master:platforms/software/security/src/main/java/org/gradle/plugins/signing/signatory/pgp/PgpSignatory.java">...</a>
@@ -43,82 +119,84 @@ public class MavenSigning {
    * href="https://cs.android.com/android-studio/gradle/+/master:platforms/software/dependency-management/src/main/java/org/gradle/api/internal/artifacts/ivyservice/ivyresolve/verification/writer/WriteDependencyVerificationFile.java;l=586?q=ArmoredOutputStream&ss=android-studio%2Fgradle">...</a>
    * <a
    * href="https://cs.android.com/android-studio/gradle/+/master:platforms/software/security/src/main/java/org/gradle/security/internal/SecuritySupport.java;l=65">...</a>
-   *
-   * @param toSign
-   * @param key
-   * @param password
-   * @return
-   * @throws IOException
    */
-  protected static Path in_memory_pgp_sign(Path toSign, String key, String password)
-      throws IOException {
-    LOG.info("Signing " + toSign + " with in-memory PGP keys");
+  protected static class InMemoryPgpSigner implements Signer {
+    private final PGPSecretKey pgpSecretKey;
+    private final PGPPrivateKey privateKey;
 
-    Path dir = Files.createTempDirectory("maven-sign");
-    Path signatureOutputPath = dir.resolve(toSign.getFileName() + ".asc");
-
-    PGPSecretKey pgpSecretKey;
-    // CI builder should have the key in the environment variable in Base64 format
-    try (InputStream in =
-        PGPUtil.getDecoderStream(new ByteArrayInputStream(Base64.getDecoder().decode(key)))) {
-      pgpSecretKey = new JcaPGPSecretKeyRing(in).getSecretKey();
-    } catch (Exception e) {
-      throw new IOException("Could not read PGP secret key", e);
+    protected InMemoryPgpSigner(String key, String password) throws IOException {
+      // CI builder should have the key in the environment variable in Base64 format
+      try (InputStream in =
+          PGPUtil.getDecoderStream(new ByteArrayInputStream(Base64.getDecoder().decode(key)))) {
+        this.pgpSecretKey = new JcaPGPSecretKeyRing(in).getSecretKey();
+      } catch (Exception e) {
+        throw new IOException("Could not read PGP secret key", e);
+      }
+
+      // Decrypt the PGPSecretKey to get a PGPPrivateKey
+      this.privateKey = createPrivateKey(pgpSecretKey, password);
     }
 
-    // Decrypt the PGPSecretKey to get a PGPPrivateKey
-    PGPPrivateKey privateKey = createPrivateKey(pgpSecretKey, password);
+    @Override
+    public Path sign(Path toSign) throws IOException {
+      LOG.info("Signing " + toSign + " with in-memory PGP keys");
 
-    try {
-      // Create a PGPSignatureGenerator with the PGPPrivateKey
-      PGPSignatureGenerator signatureGenerator =
-          new PGPSignatureGenerator(
-              new BcPGPContentSignerBuilder(
-                  pgpSecretKey.getPublicKey().getAlgorithm(), PGPUtil.SHA512));
-      signatureGenerator.init(PGPSignature.BINARY_DOCUMENT, privateKey);
-
-      // Read the input file and write its contents to the PGPSignatureGenerator
-      try (InputStream in = new BufferedInputStream(Files.newInputStream(toSign))) {
-        int ch;
-        while ((ch = in.read()) >= 0) {
-          signatureGenerator.update((byte) ch);
-        }
-      }
+      Path dir = Files.createTempDirectory("maven-sign");
+      Path signatureOutputPath = dir.resolve(toSign.getFileName() + ".asc");
 
-      // Generate the signature
-      PGPSignature signature = signatureGenerator.generate();
+      try {
+        // Create a PGPSignatureGenerator with the PGPPrivateKey. Generators can't be shared
+        // between threads, but are cheap to make.
+        PGPSignatureGenerator signatureGenerator =
+            new PGPSignatureGenerator(
+                new BcPGPContentSignerBuilder(
+                    pgpSecretKey.getPublicKey().getAlgorithm(), PGPUtil.SHA512));
+        signatureGenerator.init(PGPSignature.BINARY_DOCUMENT, privateKey);
 
-      // Write the signature to the output file
-      try (ArmoredOutputStream out =
-          new ArmoredOutputStream(
-              new BCPGOutputStream(Files.newOutputStream(signatureOutputPath)))) {
-        signature.encode(out, true /* forTransfer */);
-        out.flush();
-      }
-    } catch (PGPException e) {
-      throw new RuntimeException(e);
-    }
+        // Read the input file and write its contents to the PGPSignatureGenerator
+        byte[] buffer = new byte[BUFFER];
+        int len;
+        try (InputStream in = Files.newInputStream(toSign)) {
+          while ((len = in.read(buffer)) >= 0) {
+            signatureGenerator.update(buffer, 0, len);
+          }
+        }
 
-    // Verify the signature
-    PGPSignatureList pgpSignatures = readSignatures(signatureOutputPath);
-    if (pgpSignatures == null) {
-      throw new IOException("Could not read PGP signatures");
-    }
+        // Generate the signature
+        PGPSignature signature = signatureGenerator.generate();
 
-    for (PGPSignature signature : pgpSignatures) {
-      try {
-        if (!verify(toSign, signature, pgpSecretKey.getPublicKey())) {
-          throw new RuntimeException(
-              String.format("Could not verify PGP signature for file %s!", toSign.getFileName()));
-        } else {
-          LOG.info(String.format("PGP signature verified for file %s", toSign.getFileName()));
+        // Write the signature to the output file
+        try (ArmoredOutputStream out =
+            new ArmoredOutputStream(
+                new BCPGOutputStream(Files.newOutputStream(signatureOutputPath)))) {
+          signature.encode(out, true /* forTransfer */);
+          out.flush();
         }
       } catch (PGPException e) {
         throw new RuntimeException(e);
       }
-    }
 
-    return signatureOutputPath;
+      // Verify the signature
+      PGPSignatureList pgpSignatures = readSignatures(signatureOutputPath);
+      if (pgpSignatures == null) {
+        throw new IOException("Could not read PGP signatures");
+      }
+
+      for (PGPSignature signature : pgpSignatures) {
+        try {
+          if (!verify(toSign, signature, pgpSecretKey.getPublicKey())) {
+            throw new RuntimeException(
+                String.format("Could not verify PGP signature for file %s!", toSign.getFileName()));
+          } else {
+            LOG.info(String.format("PGP signature verified for file %s", toSign.getFileName()));
+          }
+        } catch (PGPException e) {
+          throw new RuntimeException(e);
+        }
+      }
+
+      return signatureOutputPath;
+    }
   }
 
   private static String bytesToHex(byte[] bytes) {
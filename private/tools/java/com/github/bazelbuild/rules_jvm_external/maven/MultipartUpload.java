@@ -0,0 +1,120 @@
+// Copyright 2024 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.github.bazelbuild.rules_jvm_external.maven;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Splits a large file into parts which are uploaded in parallel, for stores such as S3 and GCS
+ * that can assemble an object from separately uploaded pieces.
+ */
+class MultipartUpload {
+
+  /** Uploads one part of a file, returning whatever is needed to assemble the parts later. */
+  interface PartUploader<T> {
+    T upload(Part part) throws Exception;
+  }
+
+  /** A contiguous range of the file being uploaded. Parts are numbered from 1. */
+  static class Part {
+    private final int number;
+    private final long offset;
+    private final long length;
+
+    Part(int number, long offset, long length) {
+      this.number = number;
+      this.offset = offset;
+      this.length = length;
+    }
+
+    int getNumber() {
+      return number;
+    }
+
+    long getOffset() {
+      return offset;
+    }
+
+    long getLength() {
+      return length;
+    }
+  }
+
+  private MultipartUpload() {
+    // Utility methods
+  }
+
+  /**
+   * Split {@code size} bytes into parts of at least {@code minPartSize} bytes, making the parts
+   * larger where needed so there are no more than {@code maxParts} of them. Only the last part may
+   * be smaller than the others.
+   */
+  static List<Part> split(long size, long minPartSize, int maxParts) {
+    if (minPartSize < 1 || maxParts < 1) {
+      throw new IllegalArgumentException(
+          String.format("Unable to split into %d parts of %d bytes", maxParts, minPartSize));
+    }
+
+    long partSize = Math.max(minPartSize, (size + maxParts - 1) / maxParts);
+    List<Part> parts = new ArrayList<>();
+    for (long offset = 0; offset < size || parts.isEmpty(); offset += partSize) {
+      parts.add(new Part(parts.size() + 1, offset, Math.min(partSize, size - offset)));
+    }
+    return parts;
+  }
+
+  /**
+   * Upload each of the {@code parts} using {@code executor}, waiting for them all to complete.
+   *
+   * @return the result of uploading each part, in the same order as {@code parts}.
+   */
+  static <T> List<T> uploadParts(List<Part> parts, PartUploader<T> uploader, Executor executor)
+      throws IOException {
+    List<CompletableFuture<T>> futures = new ArrayList<>();
+    for (Part part : parts) {
+      futures.add(
+          CompletableFuture.supplyAsync(
+              () -> {
+                try {
+                  return uploader.upload(part);
+                } catch (Exception e) {
+                  throw new CompletionException(e);
+                }
+              },
+              executor));
+    }
+
+    List<T> results = new ArrayList<>();
+    try {
+      for (CompletableFuture<T> future : futures) {
+        results.add(future.join());
+      }
+    } catch (CompletionException e) {
+      // Don't bother uploading the parts we've not got to yet
+      futures.forEach(future -> future.cancel(false));
+      Throwable cause = e.getCause() == null ? e : e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      throw new IOException("Unable to upload part", cause);
+    }
+    return results;
+  }
+}
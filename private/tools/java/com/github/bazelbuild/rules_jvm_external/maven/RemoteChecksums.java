@@ -0,0 +1,59 @@
+// Copyright 2024 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.github.bazelbuild.rules_jvm_external.maven;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.github.bazelbuild.rules_jvm_external.Checksums;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+/** Compares the checksums published in a remote repository with those of the files to upload. */
+class RemoteChecksums {
+
+  /** Fetches a file from the remote repository, if it exists. */
+  interface Fetcher {
+    Optional<byte[]> fetch(String targetUrl) throws Exception;
+  }
+
+  private RemoteChecksums() {
+    // Utility methods
+  }
+
+  /** The extension of the file a checksum is published in, such as {@code .sha256}. */
+  static String extensionOf(String checksumAlgorithm) {
+    return "." + checksumAlgorithm.toLowerCase(Locale.ROOT).replace("-", "");
+  }
+
+  /**
+   * Whether the file at {@code targetUrl} has the given {@code checksums}, according to the
+   * strongest checksum the remote repository publishes next to it. Without one, the file is
+   * assumed to have changed.
+   */
+  static boolean isUnchanged(Fetcher fetcher, String targetUrl, Map<String, String> checksums)
+      throws Exception {
+    for (String algorithm : List.of(Checksums.SHA_256, Checksums.SHA_1)) {
+      Optional<byte[]> remote = fetcher.fetch(targetUrl + extensionOf(algorithm));
+      if (remote.isPresent()) {
+        // Some tools write the file name after the checksum, so only look at the first word
+        String[] words = new String(remote.get(), UTF_8).trim().split("\\s+", 2);
+        return words[0].equalsIgnoreCase(checksums.get(algorithm));
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,139 @@
+// Copyright 2024 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.github.bazelbuild.rules_jvm_external.maven;
+
+import com.github.bazelbuild.rules_jvm_external.DaemonThreadFactory;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs uploads concurrently, while limiting how many are in flight to any one host. Uploads to the
+ * same host beyond that limit are queued, rather than tying up a thread each, so uploads to other
+ * hosts are never held up behind them.
+ */
+class UploadScheduler {
+
+  static final int DEFAULT_PARALLELISM = 8;
+  static final int DEFAULT_CONNECTIONS_PER_HOST = 4;
+
+  private final ExecutorService executor;
+  private final int connectionsPerHost;
+  private final Map<String, Host> hosts = new ConcurrentHashMap<>();
+
+  UploadScheduler(int parallelism, int connectionsPerHost) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+    }
+    if (connectionsPerHost < 1) {
+      throw new IllegalArgumentException(
+          "Connections per host must be at least 1: " + connectionsPerHost);
+    }
+    this.connectionsPerHost = connectionsPerHost;
+    this.executor =
+        Executors.newFixedThreadPool(parallelism, new DaemonThreadFactory("maven-upload"));
+  }
+
+  /**
+   * Create a scheduler configured by the {@code MAVEN_UPLOAD_PARALLELISM} and {@code
+   * MAVEN_UPLOAD_CONNECTIONS_PER_HOST} environment variables.
+   */
+  static UploadScheduler fromEnvironment() {
+    return new UploadScheduler(
+        getInt("MAVEN_UPLOAD_PARALLELISM", DEFAULT_PARALLELISM),
+        getInt("MAVEN_UPLOAD_CONNECTIONS_PER_HOST", DEFAULT_CONNECTIONS_PER_HOST));
+  }
+
+  /**
+   * Run {@code task}, which talks to the host of {@code targetUrl}, once a connection is available.
+   */
+  <T> CompletableFuture<T> submit(String targetUrl, Callable<T> task) {
+    CompletableFuture<T> toReturn = new CompletableFuture<>();
+    Host host = hosts.computeIfAbsent(hostOf(targetUrl), key -> new Host());
+    host.submit(
+        () -> {
+          try {
+            toReturn.complete(task.call());
+          } catch (Throwable e) {
+            toReturn.completeExceptionally(e);
+          } finally {
+            host.finished();
+          }
+        });
+    return toReturn;
+  }
+
+  int getConnectionsPerHost() {
+    return connectionsPerHost;
+  }
+
+  void shutdown() {
+    executor.shutdown();
+  }
+
+  // Visible for testing
+  static String hostOf(String targetUrl) {
+    try {
+      URI uri = new URI(targetUrl);
+      return uri.getScheme() + "://" + Objects.toString(uri.getAuthority(), "");
+    } catch (URISyntaxException e) {
+      // Anything we can't parse gets a queue of its own
+      return targetUrl;
+    }
+  }
+
+  private static int getInt(String name, int defaultValue) {
+    String value = System.getenv(name);
+    if (value == null || value.isEmpty()) {
+      return defaultValue;
+    }
+    try {
+      return Integer.parseInt(value.trim());
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException(name + " must be a number: " + value, e);
+    }
+  }
+
+  private class Host {
+    private final Deque<Runnable> waiting = new ArrayDeque<>();
+    private int running;
+
+    synchronized void submit(Runnable task) {
+      if (running < connectionsPerHost) {
+        running++;
+        executor.execute(task);
+      } else {
+        waiting.add(task);
+      }
+    }
+
+    synchronized void finished() {
+      Runnable next = waiting.poll();
+      if (next == null) {
+        running--;
+      } else {
+        executor.execute(next);
+      }
+    }
+  }
+}
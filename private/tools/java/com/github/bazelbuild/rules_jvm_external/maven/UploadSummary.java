@@ -0,0 +1,43 @@
+// Copyright 2024 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.github.bazelbuild.rules_jvm_external.maven;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Counts what was uploaded, and what was skipped because the remote copy was unchanged. */
+class UploadSummary {
+  private final AtomicInteger uploadedFiles = new AtomicInteger();
+  private final AtomicLong uploadedBytes = new AtomicLong();
+  private final AtomicInteger skippedFiles = new AtomicInteger();
+  private final AtomicLong skippedBytes = new AtomicLong();
+
+  void uploaded(long bytes) {
+    uploadedFiles.incrementAndGet();
+    uploadedBytes.addAndGet(bytes);
+  }
+
+  void skipped(long bytes) {
+    skippedFiles.incrementAndGet();
+    skippedBytes.addAndGet(bytes);
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "Uploaded %d files (%d bytes). Skipped %d unchanged files (%d bytes).",
+        uploadedFiles.get(), uploadedBytes.get(), skippedFiles.get(), skippedBytes.get());
+  }
+}
@@ -18,6 +18,7 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 
 import com.github.bazelbuild.rules_jvm_external.Coordinates;
 import com.github.bazelbuild.rules_jvm_external.coursier.NebulaFormat;
+import com.github.bazelbuild.rules_jvm_external.jar.IndexCache;
 import com.github.bazelbuild.rules_jvm_external.jar.IndexJar;
 import com.github.bazelbuild.rules_jvm_external.jar.PerJarIndexResults;
 import com.github.bazelbuild.rules_jvm_external.resolver.Conflict;
@@ -27,6 +28,7 @@ import com.github.bazelbuild.rules_jvm_external.resolver.ResolutionResult;
 import com.github.bazelbuild.rules_jvm_external.resolver.Resolver;
 import com.github.bazelbuild.rules_jvm_external.resolver.events.EventListener;
 import com.github.bazelbuild.rules_jvm_external.resolver.events.PhaseEvent;
+import com.github.bazelbuild.rules_jvm_external.resolver.remote.ArtifactStore;
 import com.github.bazelbuild.rules_jvm_external.resolver.remote.DownloadResult;
 import com.github.bazelbuild.rules_jvm_external.resolver.remote.Downloader;
 import com.github.bazelbuild.rules_jvm_external.resolver.remote.UriNotFoundException;
@@ -43,6 +45,7 @@ import java.io.OutputStream;
 import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
@@ -50,6 +53,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
@@ -106,13 +110,30 @@ public class Main {
       cacheResults = "1".equals(rjeUnsafeCache) || Boolean.parseBoolean(rjeUnsafeCache);
     }
 
+    String rjeArtifactStore = System.getenv("RJE_ARTIFACT_STORE");
+    ArtifactStore store = null;
+    if (rjeArtifactStore != null && !rjeArtifactStore.isEmpty()) {
+      store = new ArtifactStore(Paths.get(rjeArtifactStore));
+    }
+
+    String rjeProbeMetadata = System.getenv("RJE_PROBE_MAVEN_METADATA");
+    boolean probeMetadata = false;
+    if (rjeProbeMetadata != null) {
+      probeMetadata = "1".equals(rjeProbeMetadata) || Boolean.parseBoolean(rjeProbeMetadata);
+    }
+
+    PreviousLockFile previousLockFile = readPreviousLockFile(config);
+    IndexCache indexCache = createIndexCache(request);
+
     Downloader downloader =
         new Downloader(
-            config.getNetrc(),
+            config.getHttpDownloader(),
+            config.getPomCache(),
             request.getLocalCache(),
             request.getRepositories(),
-            listener,
-            cacheResults);
+            cacheResults,
+            store,
+            probeMetadata);
 
     List<CompletableFuture<Set<DependencyInfo>>> futures = new LinkedList<>();
 
@@ -132,6 +153,9 @@ public class Main {
               try {
                 return getDependencyInfos(
                     downloader,
+                    indexCache,
+                    previousLockFile,
+                    request,
                     coords,
                     resolved.successors(coords),
                     config.isFetchSources(),
@@ -177,6 +201,33 @@ public class Main {
     }
   }
 
+  private static PreviousLockFile readPreviousLockFile(ResolverConfig config) {
+    String rjeIncremental = System.getenv("RJE_INCREMENTAL_REPIN");
+    if (!"1".equals(rjeIncremental) && !Boolean.parseBoolean(rjeIncremental)) {
+      return null;
+    }
+
+    // We're about to overwrite the lock file, so this is our last chance to read it.
+    ResolutionRequest request = config.getResolutionRequest();
+    return PreviousLockFile.read(config.getOutput())
+        .filter(lock -> lock.isUsingSameRepositories(request.getRepositories()))
+        .orElse(null);
+  }
+
+  private static IndexCache createIndexCache(ResolutionRequest request) {
+    String rjeIndexCache = System.getenv("RJE_INDEX_CACHE");
+    if (rjeIndexCache != null && !rjeIndexCache.isEmpty()) {
+      return new IndexCache(Paths.get(rjeIndexCache));
+    }
+
+    // Otherwise the resolver's home is a temporary directory, and there's no point caching anything
+    if (request.isUseUnsafeSharedCache()) {
+      return new IndexCache(
+          request.getUserHome().resolve(".cache").resolve("rules_jvm_external").resolve("index"));
+    }
+    return null;
+  }
+
   private static DownloadResult optionallyDownload(Downloader downloader, Coordinates coords) {
     try {
       return downloader.download(coords);
@@ -187,72 +238,105 @@ public class Main {
 
   private static Set<DependencyInfo> getDependencyInfos(
       Downloader downloader,
+      IndexCache indexCache,
+      PreviousLockFile previousLockFile,
+      ResolutionRequest request,
       Coordinates coords,
       Set<Coordinates> dependencies,
       boolean fetchSources,
       boolean fetchJavadoc) {
     ImmutableSet.Builder<DependencyInfo> toReturn = ImmutableSet.builder();
 
-    DownloadResult result = downloader.download(coords);
+    Optional<DependencyInfo> reused = reuse(previousLockFile, request, coords, dependencies);
+    if (reused.isPresent()) {
+      toReturn.add(reused.get());
+    } else {
+      DownloadResult result = downloader.download(coords);
+      if (result == null) {
+        return toReturn.build();
+      }
+      toReturn.add(index(indexCache, coords, result, dependencies));
+    }
 
-    if (result == null) {
-      return toReturn.build();
+    if (fetchSources) {
+      Coordinates sourceCoords = coords.setClassifier("sources").setExtension("jar");
+      optionallyFulfill(downloader, previousLockFile, request, sourceCoords)
+          .ifPresent(toReturn::add);
     }
 
-    PerJarIndexResults indexResults;
-    if (result.getPath().isPresent()) {
-      try {
-        indexResults = new IndexJar().index(result.getPath().get());
-      } catch (IOException e) {
-        throw new UncheckedIOException(e);
-      }
-    } else {
-      indexResults = new PerJarIndexResults(new TreeSet<>(), new TreeMap<>());
+    if (fetchJavadoc) {
+      Coordinates docCoords = coords.setClassifier("javadoc").setExtension("jar");
+      optionallyFulfill(downloader, previousLockFile, request, docCoords).ifPresent(toReturn::add);
+    }
+
+    return toReturn.build();
+  }
+
+  private static Optional<DependencyInfo> reuse(
+      PreviousLockFile previousLockFile,
+      ResolutionRequest request,
+      Coordinates coords,
+      Set<Coordinates> dependencies) {
+    if (previousLockFile == null) {
+      return Optional.empty();
+    }
+    return previousLockFile.reuse(
+        coords, dependencies, request.getRepositories(), request.getLocalCache());
+  }
+
+  private static Optional<DependencyInfo> optionallyFulfill(
+      Downloader downloader,
+      PreviousLockFile previousLockFile,
+      ResolutionRequest request,
+      Coordinates coords) {
+    Optional<DependencyInfo> reused = reuse(previousLockFile, request, coords, Set.of());
+    if (reused.isPresent()) {
+      return reused;
     }
 
-    toReturn.add(
+    DownloadResult result = optionallyDownload(downloader, coords);
+    if (result == null) {
+      return Optional.empty();
+    }
+    return Optional.of(
         new DependencyInfo(
             coords,
             result.getRepositories(),
             result.getPath(),
             result.getSha256(),
-            dependencies,
-            indexResults.getPackages(),
-            indexResults.getServiceImplementations()));
-
-    if (fetchSources) {
-      Coordinates sourceCoords = coords.setClassifier("sources").setExtension("jar");
-      DownloadResult source = optionallyDownload(downloader, sourceCoords);
-      if (source != null) {
-        toReturn.add(
-            new DependencyInfo(
-                sourceCoords,
-                source.getRepositories(),
-                source.getPath(),
-                source.getSha256(),
-                ImmutableSet.of(),
-                ImmutableSet.of(),
-                ImmutableSortedMap.of()));
-      }
-    }
+            ImmutableSet.of(),
+            ImmutableSet.of(),
+            ImmutableSortedMap.of()));
+  }
 
-    if (fetchJavadoc) {
-      Coordinates docCoords = coords.setClassifier("javadoc").setExtension("jar");
-      DownloadResult javadoc = optionallyDownload(downloader, docCoords);
-      if (javadoc != null) {
-        toReturn.add(
-            new DependencyInfo(
-                docCoords,
-                javadoc.getRepositories(),
-                javadoc.getPath(),
-                javadoc.getSha256(),
-                ImmutableSet.of(),
-                ImmutableSet.of(),
-                ImmutableSortedMap.of()));
+  private static DependencyInfo index(
+      IndexCache indexCache,
+      Coordinates coords,
+      DownloadResult result,
+      Set<Coordinates> dependencies) {
+    PerJarIndexResults indexResults;
+    if (result.getPath().isPresent()) {
+      try {
+        if (indexCache != null && result.getSha256().isPresent()) {
+          indexResults = indexCache.index(result.getPath().get(), result.getSha256().get());
+        } else {
+          indexResults = new IndexJar().index(result.getPath().get());
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
       }
+    } else {
+      indexResults = new PerJarIndexResults(new TreeSet<>(), new TreeMap<>());
     }
 
-    return toReturn.build();
+    return new DependencyInfo(
+        coords,
+        result.getRepositories(),
+        result.getPath(),
+        result.getSha256(),
+        dependencies,
+        indexResults.getPackages(),
+        indexResults.getServiceImplementations());
   }
 
   private static void writeLockFile(
@@ -0,0 +1,198 @@
+// Copyright 2024 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.github.bazelbuild.rules_jvm_external.resolver.cmd;
+
+import com.github.bazelbuild.rules_jvm_external.Coordinates;
+import com.github.bazelbuild.rules_jvm_external.coursier.NebulaFormat;
+import com.github.bazelbuild.rules_jvm_external.resolver.DependencyInfo;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * The contents of a v2 lock file written by a previous run of the resolver. Artifacts whose version
+ * and dependencies haven't changed since then can be carried over as they are, rather than being
+ * downloaded and indexed all over again.
+ */
+class PreviousLockFile {
+
+  private static final Logger LOG = Logger.getLogger(PreviousLockFile.class.getName());
+
+  private final JsonObject artifacts;
+  private final JsonObject dependencies;
+  private final JsonObject packages;
+  private final JsonObject services;
+  private final JsonObject repositories;
+  private final Set<String> skipped;
+
+  private PreviousLockFile(JsonObject lock) {
+    this.artifacts = getObject(lock, "artifacts");
+    this.dependencies = getObject(lock, "dependencies");
+    this.packages = getObject(lock, "packages");
+    this.services = getObject(lock, "services");
+    this.repositories = getObject(lock, "repositories");
+    this.skipped = toStrings(lock.getAsJsonArray("skipped"));
+  }
+
+  /**
+   * Read the lock file at {@code path}. If there is no lock file, or it's not in a format we
+   * understand (for example, because it was used to bootstrap the resolver and is empty), then
+   * there's nothing to reuse.
+   */
+  static Optional<PreviousLockFile> read(Path path) {
+    if (path == null || !Files.exists(path)) {
+      return Optional.empty();
+    }
+
+    try {
+      JsonObject lock = new Gson().fromJson(Files.readString(path), JsonObject.class);
+      if (lock == null
+          || !lock.has("version")
+          || !"2".equals(lock.get("version").getAsString())) {
+        return Optional.empty();
+      }
+      return Optional.of(new PreviousLockFile(lock));
+    } catch (JsonParseException | ClassCastException | IllegalStateException e) {
+      LOG.fine(String.format("Unable to parse previous lock file %s: %s%n", path, e));
+      return Optional.empty();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Whether the previous lock file was generated using the same {@code repos}. If not, the list of
+   * repositories hosting each artifact may have changed, so nothing can be reused.
+   */
+  boolean isUsingSameRepositories(Collection<URI> repos) {
+    Set<String> stripped =
+        repos.stream()
+            .map(Object::toString)
+            .map(NebulaFormat::stripAuthenticationInformation)
+            .collect(Collectors.toSet());
+    return stripped.equals(repositories.keySet());
+  }
+
+  /**
+   * Recreate the {@link DependencyInfo} for {@code coords} from the previous lock file, provided
+   * that the same version was locked and it had the same {@code deps}.
+   *
+   * @param repos the repositories being resolved against, which are reported as hosting the
+   *     artifact if they did so last time.
+   * @param localCache where the artifact would have been downloaded to.
+   */
+  Optional<DependencyInfo> reuse(
+      Coordinates coords, Set<Coordinates> deps, Collection<URI> repos, Path localCache) {
+    JsonObject artifact = getObject(artifacts, shortKey(coords));
+    if (!artifact.has("version") || !coords.getVersion().equals(getString(artifact, "version"))) {
+      return Optional.empty();
+    }
+
+    String key = coords.asKey();
+    Optional<String> sha256 = Optional.empty();
+    Optional<Path> path = Optional.empty();
+    if (!skipped.contains(key)) {
+      String classifier = coords.getClassifier().isEmpty() ? "jar" : coords.getClassifier();
+      String sha = getString(getObject(artifact, "shasums"), classifier);
+      if (sha == null) {
+        // We never downloaded this before, or we failed to. Either way, try again.
+        return Optional.empty();
+      }
+      sha256 = Optional.of(sha);
+      path = Optional.of(localCache.resolve(coords.toRepoPath()));
+    }
+
+    Set<String> lockedDeps = toStrings(dependencies.getAsJsonArray(key));
+    Set<String> currentDeps = deps.stream().map(Coordinates::asKey).collect(Collectors.toSet());
+    if (!lockedDeps.equals(currentDeps)) {
+      return Optional.empty();
+    }
+
+    Set<URI> hostedBy = new LinkedHashSet<>();
+    for (URI repo : repos) {
+      String stripped = NebulaFormat.stripAuthenticationInformation(repo.toString());
+      if (toStrings(repositories.getAsJsonArray(stripped)).contains(key)) {
+        hostedBy.add(repo);
+      }
+    }
+
+    SortedMap<String, SortedSet<String>> serviceImplementations = new TreeMap<>();
+    for (Map.Entry<String, JsonElement> entry : getObject(services, key).entrySet()) {
+      serviceImplementations.put(
+          entry.getKey(), new TreeSet<>(toStrings(entry.getValue().getAsJsonArray())));
+    }
+
+    return Optional.of(
+        new DependencyInfo(
+            coords,
+            hostedBy,
+            path,
+            sha256,
+            deps,
+            toStrings(packages.getAsJsonArray(key)),
+            serviceImplementations));
+  }
+
+  // Mirrors the grouping of artifacts in `NebulaFormat`
+  private static String shortKey(Coordinates coords) {
+    String shortKey = coords.getGroupId() + ":" + coords.getArtifactId();
+    if (!coords.getExtension().isEmpty() && !"jar".equals(coords.getExtension())) {
+      shortKey += ":" + coords.getExtension();
+    }
+    return shortKey;
+  }
+
+  private static JsonObject getObject(JsonObject parent, String name) {
+    JsonElement element = parent.get(name);
+    if (element == null || !element.isJsonObject()) {
+      return new JsonObject();
+    }
+    return element.getAsJsonObject();
+  }
+
+  private static String getString(JsonObject parent, String name) {
+    JsonElement element = parent.get(name);
+    if (element == null || element.isJsonNull()) {
+      return null;
+    }
+    return element.getAsString();
+  }
+
+  private static Set<String> toStrings(JsonArray array) {
+    Set<String> toReturn = new TreeSet<>();
+    if (array != null) {
+      array.forEach(element -> toReturn.add(element.getAsString()));
+    }
+    return toReturn;
+  }
+}
@@ -21,6 +21,8 @@ import com.github.bazelbuild.rules_jvm_external.resolver.events.EventListener;
 import com.github.bazelbuild.rules_jvm_external.resolver.events.PhaseEvent;
 import com.github.bazelbuild.rules_jvm_external.resolver.maven.MavenResolver;
 import com.github.bazelbuild.rules_jvm_external.resolver.netrc.Netrc;
+import com.github.bazelbuild.rules_jvm_external.resolver.remote.HttpDownloader;
+import com.github.bazelbuild.rules_jvm_external.resolver.remote.PomCache;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 import java.io.IOException;
@@ -40,6 +42,8 @@ public class ResolverConfig {
   private final boolean fetchSources;
   private final boolean fetchJavadoc;
   private final Netrc netrc;
+  private final HttpDownloader httpDownloader;
+  private final PomCache pomCache;
   private final Path output;
   private final String inputHash;
   private final int maxThreads;
@@ -47,6 +51,8 @@ public class ResolverConfig {
   public ResolverConfig(EventListener listener, String... args) throws IOException {
     Path configPath = null;
     this.netrc = Netrc.fromUserHome();
+    this.httpDownloader = new HttpDownloader(netrc, listener);
+    this.pomCache = new PomCache();
 
     ResolutionRequest request = new ResolutionRequest();
     String chosenResolver = "maven";
@@ -205,7 +211,7 @@ public class ResolverConfig {
     this.output = output;
 
     if (chosenResolver.equals("maven")) {
-      this.resolver = new MavenResolver(netrc, maxThreads, listener);
+      this.resolver = new MavenResolver(netrc, maxThreads, listener, httpDownloader, pomCache);
     } else {
       throw new RuntimeException("Unknown resolver: " + chosenResolver);
     }
@@ -231,6 +237,16 @@ public class ResolverConfig {
     return netrc;
   }
 
+  /** The HTTP client shared by the resolver and the downloader. */
+  public HttpDownloader getHttpDownloader() {
+    return httpDownloader;
+  }
+
+  /** The parsed POMs shared by the resolver and the downloader. */
+  public PomCache getPomCache() {
+    return pomCache;
+  }
+
   public int getMaxThreads() {
     return maxThreads;
   }
@@ -17,18 +17,11 @@ package com.github.bazelbuild.rules_jvm_external.resolver.maven;
 import static com.github.bazelbuild.rules_jvm_external.resolver.maven.MavenPackagingMappings.mapPackagingToExtension;
 
 import com.github.bazelbuild.rules_jvm_external.Coordinates;
-import java.io.BufferedInputStream;
+import com.github.bazelbuild.rules_jvm_external.resolver.remote.PomCache;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.Reader;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import org.apache.maven.model.Model;
-import org.apache.maven.model.io.xpp3.MavenXpp3Reader;
-import org.codehaus.plexus.util.ReaderFactory;
-import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
 import org.eclipse.aether.AbstractRepositoryListener;
 import org.eclipse.aether.RepositoryEvent;
 import org.eclipse.aether.artifact.Artifact;
@@ -36,6 +29,15 @@ import org.eclipse.aether.artifact.Artifact;
 public class CoordinateGatheringListener extends AbstractRepositoryListener {
 
   private final Map<Coordinates, Coordinates> knownRewrittenCoordinates = new ConcurrentHashMap<>();
+  private final PomCache pomCache;
+
+  public CoordinateGatheringListener() {
+    this(new PomCache());
+  }
+
+  public CoordinateGatheringListener(PomCache pomCache) {
+    this.pomCache = pomCache;
+  }
 
   @Override
   public void artifactResolved(RepositoryEvent event) {
@@ -50,29 +52,23 @@ public class CoordinateGatheringListener extends AbstractRepositoryListener {
       return;
     }
 
-    try (InputStream is = new FileInputStream(file);
-        BufferedInputStream bis = new BufferedInputStream(is);
-        Reader reader = ReaderFactory.newXmlReader(bis)) {
-      MavenXpp3Reader mavenXpp3Reader = new MavenXpp3Reader();
-      Model model = mavenXpp3Reader.read(reader);
-      String packaging = model.getPackaging();
+    Coordinates coords =
+        new Coordinates(
+            artifact.getGroupId(), artifact.getArtifactId(), null, null, artifact.getVersion());
+
+    try {
+      String packaging = pomCache.get(coords, file.toPath()).getPackaging();
 
       if (packaging == null) {
         return;
       }
 
-      packaging = packaging.trim();
-
       String extension = mapPackagingToExtension(packaging);
       // The default packaging is "jar" anyway
       if (extension.isEmpty() || "jar".equals(extension)) {
         return;
       }
 
-      Coordinates coords =
-          new Coordinates(
-              artifact.getGroupId(), artifact.getArtifactId(), null, null, artifact.getVersion());
-
       Coordinates actualCoords =
           new Coordinates(
               artifact.getGroupId(),
@@ -82,7 +78,7 @@ public class CoordinateGatheringListener extends AbstractRepositoryListener {
               artifact.getVersion());
 
       knownRewrittenCoordinates.put(coords, actualCoords);
-    } catch (IOException | XmlPullParserException e) {
+    } catch (IOException e) {
       throw new RuntimeException("Unable to determine packaging", e);
     }
   }
@@ -0,0 +1,94 @@
+// Copyright 2024 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.github.bazelbuild.rules_jvm_external.resolver.maven;
+
+import com.github.bazelbuild.rules_jvm_external.resolver.remote.DownloadedFile;
+import com.github.bazelbuild.rules_jvm_external.resolver.remote.HttpDownloader;
+import com.github.bazelbuild.rules_jvm_external.resolver.remote.UriNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.logging.Logger;
+import org.eclipse.aether.spi.connector.transport.AbstractTransporter;
+import org.eclipse.aether.spi.connector.transport.GetTask;
+import org.eclipse.aether.spi.connector.transport.PeekTask;
+import org.eclipse.aether.spi.connector.transport.PutTask;
+
+/**
+ * A read-only {@link org.eclipse.aether.spi.connector.transport.Transporter} for a single remote
+ * repository, which delegates to a shared {@link HttpDownloader}.
+ */
+class HttpDownloaderTransporter extends AbstractTransporter {
+
+  private static final Logger LOG = Logger.getLogger(HttpDownloaderTransporter.class.getName());
+
+  private final URI baseUri;
+  private final HttpDownloader httpDownloader;
+
+  HttpDownloaderTransporter(URI repository, HttpDownloader httpDownloader) {
+    String url = repository.toString();
+    this.baseUri = URI.create(url.endsWith("/") ? url : url + "/");
+    this.httpDownloader = httpDownloader;
+  }
+
+  @Override
+  public int classify(Throwable error) {
+    return error instanceof UriNotFoundException ? ERROR_NOT_FOUND : ERROR_OTHER;
+  }
+
+  @Override
+  protected void implPeek(PeekTask task) {
+    URI uri = baseUri.resolve(task.getLocation());
+    if (!httpDownloader.head(uri)) {
+      throw new UriNotFoundException("Unable to find " + uri);
+    }
+  }
+
+  @Override
+  protected void implGet(GetTask task) throws Exception {
+    URI uri = baseUri.resolve(task.getLocation());
+    // The `HttpDownloader` takes care of retries, and reports authentication failures as the file
+    // being missing.
+    DownloadedFile file = httpDownloader.get(uri);
+    if (file == null) {
+      throw new UriNotFoundException("Unable to find " + uri);
+    }
+
+    Path path = file.getPath();
+    try (InputStream is = Files.newInputStream(path)) {
+      utilGet(task, is, false, Files.size(path), false);
+    } finally {
+      if (file.isTemporary()) {
+        try {
+          Files.deleteIfExists(path);
+        } catch (IOException e) {
+          LOG.fine(String.format("Unable to delete %s: %s%n", path, e));
+        }
+      }
+    }
+  }
+
+  @Override
+  protected void implPut(PutTask task) {
+    throw new UnsupportedOperationException("Uploading is not supported: " + task.getLocation());
+  }
+
+  @Override
+  protected void implClose() {
+    // The `HttpDownloader` is shared, and outlives any one transporter.
+  }
+}
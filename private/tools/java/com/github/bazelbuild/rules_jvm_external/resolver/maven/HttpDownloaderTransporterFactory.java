@@ -0,0 +1,105 @@
+// Copyright 2024 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.github.bazelbuild.rules_jvm_external.resolver.maven;
+
+import com.github.bazelbuild.rules_jvm_external.resolver.netrc.Netrc;
+import com.github.bazelbuild.rules_jvm_external.resolver.remote.HttpDownloader;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Objects;
+import java.util.Set;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.repository.AuthenticationContext;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.spi.connector.transport.Transporter;
+import org.eclipse.aether.spi.connector.transport.TransporterFactory;
+import org.eclipse.aether.transfer.NoTransporterException;
+
+/**
+ * Creates {@link Transporter}s which fetch from remote repositories using the same {@link
+ * HttpDownloader} as the rest of the resolver, so that POMs fetched while collecting dependencies
+ * share connections, credentials and retries with the artifacts downloaded afterwards.
+ *
+ * <p>Repositories which need anything the {@code HttpDownloader} can't provide, such as a proxy or
+ * credentials from {@code settings.xml}, are left to the next transporter factory.
+ */
+class HttpDownloaderTransporterFactory implements TransporterFactory {
+
+  // Ahead of the `HttpTransporterFactory`, which has a priority of 5
+  private static final float PRIORITY = 10.0f;
+  private static final Set<String> SCHEMES = Set.of("http", "https");
+
+  private final Netrc netrc;
+  private final HttpDownloader httpDownloader;
+
+  HttpDownloaderTransporterFactory(Netrc netrc, HttpDownloader httpDownloader) {
+    this.netrc = Objects.requireNonNull(netrc, "Netrc");
+    this.httpDownloader = Objects.requireNonNull(httpDownloader, "HTTP downloader");
+  }
+
+  @Override
+  public Transporter newInstance(RepositorySystemSession session, RemoteRepository repository)
+      throws NoTransporterException {
+    URI uri;
+    try {
+      uri = new URI(repository.getUrl());
+    } catch (URISyntaxException e) {
+      throw new NoTransporterException(repository, e);
+    }
+
+    if (!SCHEMES.contains(uri.getScheme())) {
+      throw new NoTransporterException(repository, "Unsupported scheme: " + uri.getScheme());
+    }
+    if (uri.getUserInfo() != null) {
+      throw new NoTransporterException(repository, "Credentials in URLs are not supported");
+    }
+    if (repository.getProxy() != null) {
+      throw new NoTransporterException(repository, "Proxies are not supported");
+    }
+    if (!isAuthenticatedByNetrc(session, repository, uri.getHost())) {
+      throw new NoTransporterException(repository, "Credentials do not come from the netrc");
+    }
+
+    return new HttpDownloaderTransporter(uri, httpDownloader);
+  }
+
+  @Override
+  public float getPriority() {
+    return PRIORITY;
+  }
+
+  // The `HttpDownloader` only knows how to authenticate using the netrc, so any other credentials
+  // (for example, from `settings.xml`) need to be used by a different transporter.
+  private boolean isAuthenticatedByNetrc(
+      RepositorySystemSession session, RemoteRepository repository, String host) {
+    if (repository.getAuthentication() == null) {
+      return true;
+    }
+
+    Netrc.Credential credential = netrc.getCredential(host);
+    if (credential == null) {
+      return false;
+    }
+
+    AuthenticationContext context = AuthenticationContext.forRepository(session, repository);
+    try {
+      return context != null
+          && Objects.equals(credential.login(), context.get(AuthenticationContext.USERNAME))
+          && Objects.equals(credential.password(), context.get(AuthenticationContext.PASSWORD));
+    } finally {
+      AuthenticationContext.close(context);
+    }
+  }
+}
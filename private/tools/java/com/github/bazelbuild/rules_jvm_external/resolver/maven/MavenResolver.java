@@ -22,6 +22,8 @@ import com.github.bazelbuild.rules_jvm_external.resolver.Resolver;
 import com.github.bazelbuild.rules_jvm_external.resolver.events.EventListener;
 import com.github.bazelbuild.rules_jvm_external.resolver.events.LogEvent;
 import com.github.bazelbuild.rules_jvm_external.resolver.netrc.Netrc;
+import com.github.bazelbuild.rules_jvm_external.resolver.remote.HttpDownloader;
+import com.github.bazelbuild.rules_jvm_external.resolver.remote.PomCache;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Sets;
 import com.google.common.graph.Graph;
@@ -82,11 +84,31 @@ import org.eclipse.aether.util.graph.visitor.TreeDependencyVisitor;
 public class MavenResolver implements Resolver {
 
   private final RemoteRepositoryFactory remoteRepositoryFactory;
+  private final HttpDownloaderTransporterFactory transporterFactory;
+  private final PomCache pomCache;
   private final int maxThreads;
   private final EventListener listener;
 
   public MavenResolver(Netrc netrc, int maxThreads, EventListener listener) {
+    this(netrc, maxThreads, listener, new HttpDownloader(netrc, listener), new PomCache());
+  }
+
+  /**
+   * @param httpDownloader used to fetch from http and https repositories. Sharing it with the
+   *     {@code Downloader} means that the files needed for resolution and the artifacts fetched
+   *     afterwards use the same connections.
+   * @param pomCache holds the POMs parsed during resolution, so the {@code Downloader} need not
+   *     parse them again.
+   */
+  public MavenResolver(
+      Netrc netrc,
+      int maxThreads,
+      EventListener listener,
+      HttpDownloader httpDownloader,
+      PomCache pomCache) {
     this.remoteRepositoryFactory = new RemoteRepositoryFactory(netrc);
+    this.transporterFactory = new HttpDownloaderTransporterFactory(netrc, httpDownloader);
+    this.pomCache = pomCache;
     this.maxThreads = maxThreads;
     this.listener = listener;
   }
@@ -151,7 +173,7 @@ public class MavenResolver implements Resolver {
     RepositorySystem system = createRepositorySystem();
     ConsoleRepositoryListener consoleLogListener = new ConsoleRepositoryListener(listener);
     ErrorReportingListener errorListener = new ErrorReportingListener();
-    CoordinateGatheringListener coordinatesListener = new CoordinateGatheringListener();
+    CoordinateGatheringListener coordinatesListener = new CoordinateGatheringListener(pomCache);
     RepositorySystemSession session =
         prepareSession(
             system,
@@ -266,7 +288,8 @@ public class MavenResolver implements Resolver {
     return new ResolutionResult(graphNormalizationResult.getNormalizedGraph(), conflicts);
   }
 
-  private GraphNormalizationResult makeVersionsConsistent(Graph<Coordinates> dependencyGraph) {
+  // Visible for benchmarking
+  static GraphNormalizationResult makeVersionsConsistent(Graph<Coordinates> dependencyGraph) {
     Set<Coordinates> nodes = dependencyGraph.nodes();
 
     Map<Coordinates, Coordinates> mappedVersions = gatherExpectedVersions(nodes);
@@ -294,7 +317,7 @@ public class MavenResolver implements Resolver {
     return new GraphNormalizationResult(ImmutableGraph.copyOf(toReturn), conflicts);
   }
 
-  private Map<Coordinates, Coordinates> gatherExpectedVersions(Set<Coordinates> allCoords) {
+  private static Map<Coordinates, Coordinates> gatherExpectedVersions(Set<Coordinates> allCoords) {
     Function<Coordinates, String> keyify = c -> c.getGroupId() + ":" + c.getArtifactId();
 
     // Populate our map of expected versions
@@ -629,11 +652,16 @@ public class MavenResolver implements Resolver {
     return session;
   }
 
-  private static RepositorySystem createRepositorySystem() {
+  private RepositorySystem createRepositorySystem() {
     DefaultServiceLocator locator = MavenRepositorySystemUtils.newServiceLocator();
     locator.addService(RepositoryConnectorFactory.class, BasicRepositoryConnectorFactory.class);
-    locator.addService(TransporterFactory.class, FileTransporterFactory.class);
-    locator.addService(TransporterFactory.class, HttpTransporterFactory.class);
+    // Aether tries each transporter in order of priority. Repositories which our own transporter
+    // can't handle fall back to the stock http one.
+    locator.setServices(
+        TransporterFactory.class,
+        transporterFactory,
+        new FileTransporterFactory(),
+        new HttpTransporterFactory());
 
     return locator.getService(RepositorySystem.class);
   }
@@ -702,7 +730,7 @@ public class MavenResolver implements Resolver {
     return remoteRepositoryFactory.createFor(localCache.toUri());
   }
 
-  private static class GraphNormalizationResult {
+  static class GraphNormalizationResult {
     private final Graph<Coordinates> normalizedGraph;
     private final Set<Conflict> conflicts;
 
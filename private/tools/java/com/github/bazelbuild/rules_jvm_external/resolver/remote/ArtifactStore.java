@@ -0,0 +1,260 @@
+// Copyright 2024 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.github.bazelbuild.rules_jvm_external.resolver.remote;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * A content-addressed store of downloaded artifacts, keyed by their sha256.
+ *
+ * <p>The store is made up of two parts. Blobs live under {@code cas/} and are named after their
+ * digest, and an index under {@code index/} maps a path within a maven repository to the digest of
+ * the blob that was found there, along with the repositories that were checked for it. Every write
+ * goes to a temporary file first and is then atomically moved into place, so the store can be
+ * shared between concurrently running resolvers.
+ */
+public class ArtifactStore {
+
+  private static final Logger LOG = Logger.getLogger(ArtifactStore.class.getName());
+  private static final String FOUND_PREFIX = "+ ";
+  private static final String MISSING_PREFIX = "- ";
+
+  private final Path cas;
+  private final Path index;
+  private final Path tmp;
+
+  public ArtifactStore(Path root) {
+    Objects.requireNonNull(root, "Store root");
+    this.cas = root.resolve("cas");
+    this.index = root.resolve("index");
+    this.tmp = root.resolve("tmp");
+
+    try {
+      Files.createDirectories(cas);
+      Files.createDirectories(index);
+      Files.createDirectories(tmp);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Look up a path in a maven repository. An entry is only returned if the blob it points to is
+   * still present in the store.
+   */
+  public Optional<Entry> lookup(String pathInRepo) {
+    Path indexFile = index.resolve(pathInRepo);
+    List<String> lines;
+    try {
+      lines = Files.readAllLines(indexFile, UTF_8);
+    } catch (NoSuchFileException e) {
+      return Optional.empty();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    if (lines.isEmpty()) {
+      return Optional.empty();
+    }
+
+    String sha256 = lines.get(0);
+    Path blob = blobPath(sha256);
+    if (!Files.exists(blob)) {
+      LOG.fine(String.format("Index for %s points to missing blob %s%n", pathInRepo, sha256));
+      return Optional.empty();
+    }
+
+    Set<URI> found = new LinkedHashSet<>();
+    Set<URI> checked = new LinkedHashSet<>();
+    for (String line : lines.subList(1, lines.size())) {
+      if (line.startsWith(FOUND_PREFIX)) {
+        URI uri = URI.create(line.substring(FOUND_PREFIX.length()));
+        found.add(uri);
+        checked.add(uri);
+      } else if (line.startsWith(MISSING_PREFIX)) {
+        checked.add(URI.create(line.substring(MISSING_PREFIX.length())));
+      }
+    }
+
+    return Optional.of(new Entry(sha256, blob, found, checked));
+  }
+
+  /**
+   * Add the contents of {@code source} to the store, hashing it as it is copied. The source file is
+   * left untouched.
+   *
+   * @return the sha256 of the stored blob.
+   */
+  public String add(Path source) {
+    try {
+      Path temp = Files.createTempFile(tmp, "blob", ".tmp");
+      String sha256;
+      try (OutputStream os = Files.newOutputStream(temp);
+          HashingOutputStream hos = new HashingOutputStream(Hashing.sha256(), os)) {
+        Files.copy(source, hos);
+        hos.flush();
+        sha256 = hos.hash().toString();
+      }
+
+      publishBlob(temp, sha256);
+      return sha256;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Move {@code file}, whose contents are already known to have the digest {@code sha256}, into the
+   * store. This avoids both copying and re-hashing freshly downloaded files.
+   */
+  public void adopt(Path file, String sha256) {
+    try {
+      Path temp = Files.createTempFile(tmp, "blob", ".tmp");
+      Files.move(file, temp, REPLACE_EXISTING);
+      publishBlob(temp, sha256);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Record that {@code pathInRepo} has the contents identified by {@code sha256}, and which of the
+   * {@code checked} repositories were {@code found} to be hosting it.
+   */
+  public void index(String pathInRepo, String sha256, Set<URI> found, Collection<URI> checked) {
+    List<String> lines = new ArrayList<>();
+    lines.add(sha256);
+    for (URI uri : checked) {
+      lines.add((found.contains(uri) ? FOUND_PREFIX : MISSING_PREFIX) + uri);
+    }
+
+    Path indexFile = index.resolve(pathInRepo);
+    try {
+      Files.createDirectories(indexFile.getParent());
+      Path temp = Files.createTempFile(tmp, "index", ".tmp");
+      Files.write(temp, lines, UTF_8);
+      moveIntoPlace(temp, indexFile);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Make the blob identified by {@code sha256} available at {@code target}. Where possible this is
+   * done using a hard link, falling back to a copy when the file system does not support them (or
+   * the store is on a different device).
+   */
+  public void materialize(String sha256, Path target) {
+    Path blob = blobPath(sha256);
+    try {
+      Files.createDirectories(target.getParent());
+      Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+      Files.delete(temp);
+      try {
+        Files.createLink(temp, blob);
+      } catch (IOException | UnsupportedOperationException e) {
+        LOG.fine(String.format("Unable to link %s, copying instead: %s%n", blob, e));
+        Files.copy(blob, temp, REPLACE_EXISTING);
+      }
+      moveIntoPlace(temp, target);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private void publishBlob(Path temp, String sha256) throws IOException {
+    Path blob = blobPath(sha256);
+    if (Files.exists(blob)) {
+      // Another process beat us to it. Since the store is content-addressed, the contents match.
+      Files.deleteIfExists(temp);
+      return;
+    }
+
+    Files.createDirectories(blob.getParent());
+    // Blobs are shared via hard links, so guard against them being modified in place.
+    temp.toFile().setReadOnly();
+    try {
+      Files.move(temp, blob, ATOMIC_MOVE);
+    } catch (FileAlreadyExistsException e) {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  private void moveIntoPlace(Path temp, Path target) throws IOException {
+    try {
+      Files.move(temp, target, ATOMIC_MOVE, REPLACE_EXISTING);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(temp, target, REPLACE_EXISTING);
+    }
+  }
+
+  private Path blobPath(String sha256) {
+    return cas.resolve(sha256.substring(0, 2)).resolve(sha256);
+  }
+
+  public static class Entry {
+    private final String sha256;
+    private final Path blob;
+    private final Set<URI> found;
+    private final Set<URI> checked;
+
+    private Entry(String sha256, Path blob, Set<URI> found, Set<URI> checked) {
+      this.sha256 = sha256;
+      this.blob = blob;
+      this.found = Set.copyOf(found);
+      this.checked = Set.copyOf(checked);
+    }
+
+    public String getSha256() {
+      return sha256;
+    }
+
+    public Path getBlob() {
+      return blob;
+    }
+
+    /** The repositories known to host this entry. */
+    public Set<URI> getFound() {
+      return found;
+    }
+
+    /** All the repositories that were checked for this entry, whether it was found or not. */
+    public Set<URI> getChecked() {
+      return checked;
+    }
+  }
+}
@@ -0,0 +1,47 @@
+// Copyright 2024 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.github.bazelbuild.rules_jvm_external.resolver.remote;
+
+import java.nio.file.Path;
+import java.util.Objects;
+
+/** A file fetched by the {@link HttpDownloader}, along with the sha256 of its contents. */
+public class DownloadedFile {
+
+  private final Path path;
+  private final String sha256;
+  private final boolean temporary;
+
+  DownloadedFile(Path path, String sha256, boolean temporary) {
+    this.path = Objects.requireNonNull(path);
+    this.sha256 = Objects.requireNonNull(sha256);
+    this.temporary = temporary;
+  }
+
+  public Path getPath() {
+    return path;
+  }
+
+  public String getSha256() {
+    return sha256;
+  }
+
+  /**
+   * Whether the file was created by the downloader, and may therefore be moved rather than copied.
+   */
+  public boolean isTemporary() {
+    return temporary;
+  }
+}
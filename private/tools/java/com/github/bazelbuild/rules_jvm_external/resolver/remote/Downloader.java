@@ -16,28 +16,38 @@ package com.github.bazelbuild.rules_jvm_external.resolver.remote;
 
 import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
 
+import com.github.bazelbuild.rules_jvm_external.Checksums;
 import com.github.bazelbuild.rules_jvm_external.Coordinates;
 import com.github.bazelbuild.rules_jvm_external.resolver.events.EventListener;
 import com.github.bazelbuild.rules_jvm_external.resolver.netrc.Netrc;
-import com.google.common.hash.Hashing;
-import java.io.BufferedInputStream;
+import com.google.common.collect.ImmutableSet;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.Reader;
 import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.logging.Logger;
-import org.apache.maven.model.Model;
-import org.apache.maven.model.io.xpp3.MavenXpp3Reader;
-import org.codehaus.plexus.util.ReaderFactory;
-import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
 
 public class Downloader {
 
@@ -53,6 +63,9 @@ public class Downloader {
   private final Set<URI> repos;
   private final boolean cacheDownloads;
   private final HttpDownloader httpDownloader;
+  private final ArtifactStore store;
+  private final MavenMetadataCache metadata;
+  private final PomCache pomCache;
 
   public Downloader(
       Netrc netrc,
@@ -60,10 +73,66 @@ public class Downloader {
       Collection<URI> repositories,
       EventListener listener,
       boolean cacheDownloads) {
+    this(netrc, localRepository, repositories, listener, cacheDownloads, null);
+  }
+
+  public Downloader(
+      Netrc netrc,
+      Path localRepository,
+      Collection<URI> repositories,
+      EventListener listener,
+      boolean cacheDownloads,
+      ArtifactStore store) {
+    this(netrc, localRepository, repositories, listener, cacheDownloads, store, false);
+  }
+
+  /**
+   * @param store an optional {@link ArtifactStore}. When present, previously downloaded artifacts
+   *     are served from the store without contacting any of the already checked repositories.
+   *     Snapshots are never stored, since they may change.
+   * @param probeMetadata when set, whether a repository hosts an artifact is answered from its
+   *     {@code maven-metadata.xml}, which is fetched once per group and artifact id. Repositories
+   *     are only asked about the individual file if the metadata doesn't list the version.
+   */
+  public Downloader(
+      Netrc netrc,
+      Path localRepository,
+      Collection<URI> repositories,
+      EventListener listener,
+      boolean cacheDownloads,
+      ArtifactStore store,
+      boolean probeMetadata) {
+    this(
+        new HttpDownloader(netrc, listener),
+        new PomCache(),
+        localRepository,
+        repositories,
+        cacheDownloads,
+        store,
+        probeMetadata);
+  }
+
+  /**
+   * @param httpDownloader the client to download with, which may be shared with other parts of the
+   *     resolver so they reuse the same connections.
+   * @param pomCache used to look up the packaging and relocation of POMs, which may already have
+   *     been parsed while resolving.
+   */
+  public Downloader(
+      HttpDownloader httpDownloader,
+      PomCache pomCache,
+      Path localRepository,
+      Collection<URI> repositories,
+      boolean cacheDownloads,
+      ArtifactStore store,
+      boolean probeMetadata) {
     this.localRepository = localRepository;
-    this.repos = Set.copyOf(repositories);
+    this.repos = ImmutableSet.copyOf(repositories);
     this.cacheDownloads = cacheDownloads;
-    this.httpDownloader = new HttpDownloader(netrc, listener);
+    this.httpDownloader = httpDownloader;
+    this.store = store;
+    this.metadata = probeMetadata ? new MavenMetadataCache(httpDownloader) : null;
+    this.pomCache = pomCache;
   }
 
   public DownloadResult download(Coordinates coords) {
@@ -97,18 +166,26 @@ public class Downloader {
       return null;
     }
     if (pomResult.getPath().isPresent()) {
-      try (InputStream is = Files.newInputStream(pomResult.getPath().get());
-          BufferedInputStream bis = new BufferedInputStream(is);
-          Reader reader = ReaderFactory.newXmlReader(bis)) {
-        MavenXpp3Reader mavenXpp3Reader = new MavenXpp3Reader();
-        Model model = mavenXpp3Reader.read(reader);
-        String packaging = model.getPackaging();
-
-        if ("pom".equals(packaging)) {
+      Path pomPath = pomResult.getPath().get();
+      try {
+        PomCache.ParsedPom parsed =
+            pomResult.getSha256().isPresent()
+                ? pomCache.get(coords, pomResult.getSha256().get(), pomPath)
+                : pomCache.get(coords, pomPath);
+
+        if ("pom".equals(parsed.getPackaging())) {
           // We have an aggregating result.
           return new DownloadResult(coords, pomResult.getRepositories(), null, null);
         }
-      } catch (IOException | XmlPullParserException e) {
+
+        if (parsed.getRelocation().isPresent()) {
+          // The artifact has moved, so there's nothing to download here. Resolution follows the
+          // relocation, and the artifact at the new coordinates is downloaded in its own right.
+          LOG.fine(
+              String.format("%s has been relocated to %s%n", coords, parsed.getRelocation().get()));
+          return new DownloadResult(coords, pomResult.getRepositories(), null, null);
+        }
+      } catch (IOException e) {
         throw new RuntimeException(e);
       }
     }
@@ -117,8 +194,6 @@ public class Downloader {
   }
 
   private DownloadResult performDownload(Coordinates coordsToUse, String path) {
-    Set<URI> repos = new LinkedHashSet<>();
-
     Path pathInRepo = null;
 
     // Check the local cache for the path first
@@ -133,41 +208,336 @@ public class Downloader {
       assumedDownloaded = "1".equals(rjeAssumePresent) || Boolean.parseBoolean(rjeAssumePresent);
     }
 
-    boolean downloaded = false;
-    for (URI repo : this.repos) {
-      if (pathInRepo == null) {
-        LOG.fine(String.format("Downloading %s%n", coordsToUse));
-        pathInRepo = httpDownloader.get(buildUri(repo, path));
-        if (pathInRepo != null) {
-          repos.add(repo);
-          downloaded = true;
-
-          if (cacheDownloads && !cachedResult.equals(pathInRepo)) {
-            try {
-              Files.createDirectories(cachedResult.getParent());
-              Files.copy(pathInRepo, cachedResult, REPLACE_EXISTING);
-            } catch (IOException e) {
-              throw new UncheckedIOException(e);
-            }
-          }
+    // Snapshots may change from one build to the next, so they're never kept in the store
+    boolean useStore = store != null && !coordsToUse.getVersion().endsWith("-SNAPSHOT");
+    if (useStore) {
+      Optional<ArtifactStore.Entry> stored = store.lookup(path);
+      if (stored.isPresent()) {
+        return performStoredDownload(
+            coordsToUse, path, cachedResult, stored.get(), assumedDownloaded);
+      }
+    }
+
+    DownloadedFile fetched = null;
+    Set<URI> found = new HashSet<>();
+    Set<URI> checked = new HashSet<>();
+    Map<URI, CompletableFuture<Boolean>> probes = new LinkedHashMap<>();
+
+    if (pathInRepo == null) {
+      LOG.fine(String.format("Downloading %s%n", coordsToUse));
+      Map.Entry<URI, DownloadedFile> winner = hedgedGet(path, checked, probes);
+      if (winner == null) {
+        return null;
+      }
+      found.add(winner.getKey());
+      fetched = winner.getValue();
+      pathInRepo = fetched.getPath();
+
+      if (!useStore && cacheDownloads && !cachedResult.equals(pathInRepo)) {
+        try {
+          Files.createDirectories(cachedResult.getParent());
+          Files.copy(pathInRepo, cachedResult, REPLACE_EXISTING);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+    }
+
+    boolean downloaded = !found.isEmpty();
+    if (assumedDownloaded) {
+      LOG.fine(String.format("Assuming %s is cached%n", coordsToUse));
+      downloaded |= !this.repos.isEmpty();
+    } else {
+      LOG.fine(String.format("Checking head of %s%n", coordsToUse));
+      for (URI repo : this.repos) {
+        if (!checked.contains(repo) && !probes.containsKey(repo)) {
+          probes.put(repo, probe(coordsToUse, repo, path));
         }
-      } else if (assumedDownloaded) { // path is set
-        LOG.fine(String.format("Assuming %s is cached%n", coordsToUse));
-        downloaded = true;
-      } else if (httpDownloader.head(buildUri(repo, path))) { // path is set
-        LOG.fine(String.format("Checking head of %s%n", coordsToUse));
-        repos.add(repo);
-        downloaded = true;
       }
+      found.addAll(awaitProbes(probes));
+      checked.addAll(probes.keySet());
+      downloaded |= !found.isEmpty();
     }
 
     if (!downloaded) {
       return null;
     }
 
-    String sha256 = calculateSha256(pathInRepo);
+    // Use the order the repos were declared in, so that the result is stable no matter which repo
+    // responded first.
+    Set<URI> repos = inDeclaredOrder(found);
+
+    String sha256;
+    if (useStore) {
+      if (fetched != null && fetched.isTemporary()) {
+        sha256 = fetched.getSha256();
+        store.adopt(fetched.getPath(), sha256);
+      } else {
+        sha256 = store.add(pathInRepo);
+      }
+      store.index(path, sha256, repos, inDeclaredOrder(checked));
+      if (!Files.exists(cachedResult)) {
+        store.materialize(sha256, cachedResult);
+      }
+      pathInRepo = cachedResult;
+    } else if (fetched != null) {
+      sha256 = fetched.getSha256();
+    } else {
+      sha256 = calculateSha256(pathInRepo);
+    }
+
+    return new DownloadResult(coordsToUse, repos, pathInRepo, sha256);
+  }
+
+  private DownloadResult performStoredDownload(
+      Coordinates coordsToUse,
+      String path,
+      Path cachedResult,
+      ArtifactStore.Entry stored,
+      boolean assumedDownloaded) {
+    Set<URI> found = new LinkedHashSet<>(stored.getFound());
+    Set<URI> checked = new LinkedHashSet<>(stored.getChecked());
+
+    // These are repos we've not seen before. Find out if they have the file, and remember that.
+    Set<URI> unchecked = new LinkedHashSet<>(this.repos);
+    unchecked.removeAll(checked);
+
+    boolean downloaded = false;
+    boolean reindex = false;
+    if (assumedDownloaded) {
+      LOG.fine(String.format("Assuming %s is cached%n", coordsToUse));
+      downloaded = !unchecked.isEmpty();
+    } else if (!unchecked.isEmpty()) {
+      LOG.fine(String.format("Checking head of %s%n", coordsToUse));
+      Map<URI, CompletableFuture<Boolean>> probes = new LinkedHashMap<>();
+      for (URI repo : unchecked) {
+        probes.put(repo, probe(coordsToUse, repo, path));
+      }
+      found.addAll(awaitProbes(probes));
+      checked.addAll(unchecked);
+      reindex = true;
+    }
+
+    // If the file in the local repository didn't come from the store, it may not be what we saw
+    // last time (eg. if the artifact has been republished). Trust what's on disk, as we would if
+    // there was no store.
+    String sha256 = stored.getSha256();
+    if (Files.exists(cachedResult) && !isSameFile(cachedResult, stored.getBlob())) {
+      String actual = calculateSha256(cachedResult);
+      if (!actual.equals(sha256)) {
+        LOG.fine(String.format("%s has changed since it was stored%n", cachedResult));
+        sha256 = store.add(cachedResult);
+        reindex = true;
+      }
+    }
+
+    if (reindex) {
+      store.index(path, sha256, found, checked);
+    }
+
+    Set<URI> repos = inDeclaredOrder(found);
+    downloaded |= !repos.isEmpty();
+
+    if (!downloaded) {
+      return null;
+    }
+
+    if (!Files.exists(cachedResult)) {
+      store.materialize(sha256, cachedResult);
+    }
+
+    return new DownloadResult(coordsToUse, repos, cachedResult, sha256);
+  }
+
+  private boolean isSameFile(Path path, Path other) {
+    try {
+      return Files.isSameFile(path, other);
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Download {@code path} from whichever repo can provide it, trying the best scoring repos first.
+   * If a repo is slow to respond, we also ask the next repo, and use whichever answers first.
+   *
+   * @param checked updated with the repos that have been found not to have the file, or did.
+   * @param probes updated with the repos that were still being downloaded from when another repo
+   *     won the race. Their downloads are cancelled, but we still learn whether they have the file.
+   * @return the repo the file was downloaded from, and the file itself, or {@code null}.
+   */
+  private Map.Entry<URI, DownloadedFile> hedgedGet(
+      String path, Set<URI> checked, Map<URI, CompletableFuture<Boolean>> probes) {
+    Deque<URI> candidates = new ArrayDeque<>(httpDownloader.rank(this.repos));
+    Map<URI, HttpDownloader.InFlightDownload> inFlight = new LinkedHashMap<>();
+    RuntimeException failure = null;
+    URI latest = null;
+
+    while (!candidates.isEmpty() || !inFlight.isEmpty()) {
+      if (inFlight.isEmpty()) {
+        latest = candidates.pop();
+        inFlight.put(latest, httpDownloader.startGet(buildUri(latest, path)));
+      }
+
+      HttpDownloader.InFlightDownload newest = inFlight.get(latest);
+      List<CompletableFuture<?>> waitFor = new ArrayList<>();
+      inFlight.values().forEach(download -> waitFor.add(download.getResult()));
+
+      // If the newest request has already failed, there's no point waiting for it before asking
+      // the next repo, even if an older request is still going.
+      boolean hedgeNow = !candidates.isEmpty() && (newest == null || hasFailed(newest));
+      if (!hedgeNow && !candidates.isEmpty() && !newest.getResponded().isDone()) {
+        waitFor.add(newest.getResponded());
+        hedgeNow = !await(waitFor, httpDownloader.hedgeDelay(latest));
+      } else if (!hedgeNow) {
+        await(waitFor, null);
+      }
+
+      Iterator<Map.Entry<URI, HttpDownloader.InFlightDownload>> iterator =
+          inFlight.entrySet().iterator();
+      while (iterator.hasNext()) {
+        Map.Entry<URI, HttpDownloader.InFlightDownload> entry = iterator.next();
+        CompletableFuture<DownloadedFile> result = entry.getValue().getResult();
+        if (!result.isDone()) {
+          continue;
+        }
+        iterator.remove();
+
+        DownloadedFile file;
+        try {
+          file = result.join();
+        } catch (CompletionException | CancellationException e) {
+          if (failure == null) {
+            failure =
+                e.getCause() instanceof RuntimeException
+                    ? (RuntimeException) e.getCause()
+                    : new RuntimeException(e);
+          }
+          continue;
+        }
+
+        checked.add(entry.getKey());
+        if (file != null) {
+          // We have a winner. Anything still in flight is no longer needed, and neither is
+          // anything it manages to download before noticing it has been cancelled.
+          inFlight.forEach(
+              (repo, download) -> {
+                download.cancel();
+                probes.put(repo, download.isPresent());
+                download
+                    .getResult()
+                    .whenComplete(
+                        (loser, throwable) -> {
+                          if (loser != null && loser.isTemporary()) {
+                            HttpDownloader.deleteQuietly(loser.getPath());
+                          }
+                        });
+              });
+          return Map.entry(entry.getKey(), file);
+        }
+      }
+
+      if (hedgeNow) {
+        latest = candidates.pop();
+        LOG.fine(String.format("Hedging download of %s with %s%n", path, latest));
+        inFlight.put(latest, httpDownloader.startGet(buildUri(latest, path)));
+      }
+    }
+
+    if (failure != null) {
+      throw failure;
+    }
+    return null;
+  }
+
+  /** Whether {@code download} has already told us that it won't provide the file. */
+  private boolean hasFailed(HttpDownloader.InFlightDownload download) {
+    CompletableFuture<Integer> responded = download.getResponded();
+    if (!responded.isDone()) {
+      return false;
+    }
+    if (responded.isCompletedExceptionally()) {
+      return true;
+    }
+    int code = responded.join();
+    return code < 200 || code > 299;
+  }
+
+  /**
+   * Find out whether {@code repo} hosts {@code path}. Where we can, this is answered from the
+   * repo's {@code maven-metadata.xml}, falling back to asking for the file itself when the metadata
+   * is missing or doesn't (yet) list the version we're after.
+   */
+  private CompletableFuture<Boolean> probe(Coordinates coords, URI repo, String path) {
+    URI fileUri = buildUri(repo, path);
+    // Classified artifacts are optional extras, and snapshots are listed in per-version metadata,
+    // so the version being listed only tells us something about the main artifact of releases.
+    if (metadata == null
+        || !coords.getClassifier().isEmpty()
+        || coords.getVersion().endsWith("-SNAPSHOT")) {
+      return httpDownloader.headAsync(fileUri);
+    }
+
+    String metadataPath =
+        String.format(
+            "%s/%s/maven-metadata.xml",
+            coords.getGroupId().replace('.', '/'), coords.getArtifactId());
+    return metadata
+        .getVersions(buildUri(repo, metadataPath))
+        .thenCompose(
+            versions -> {
+              if (versions.contains(coords.getVersion())) {
+                return CompletableFuture.completedFuture(true);
+              }
+              return httpDownloader.headAsync(fileUri);
+            });
+  }
+
+  /** Wait for each of the {@code probes} to complete, returning the repos which have the file. */
+  private Set<URI> awaitProbes(Map<URI, CompletableFuture<Boolean>> probes) {
+    Set<URI> found = new LinkedHashSet<>();
+    for (Map.Entry<URI, CompletableFuture<Boolean>> entry : probes.entrySet()) {
+      try {
+        if (entry.getValue().join()) {
+          found.add(entry.getKey());
+        }
+      } catch (CompletionException e) {
+        if (e.getCause() instanceof RuntimeException) {
+          throw (RuntimeException) e.getCause();
+        }
+        throw e;
+      }
+    }
+    return found;
+  }
+
+  /**
+   * Wait for any of the {@code futures} to complete, returning {@code false} if {@code timeout}
+   * elapses first. A {@code null} timeout waits forever.
+   */
+  private boolean await(List<CompletableFuture<?>> futures, Duration timeout) {
+    CompletableFuture<Object> any =
+        CompletableFuture.anyOf(futures.toArray(new CompletableFuture<?>[0]));
+    try {
+      if (timeout == null) {
+        any.get();
+      } else {
+        any.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+      }
+      return true;
+    } catch (TimeoutException e) {
+      return false;
+    } catch (ExecutionException | CancellationException e) {
+      // The caller deals with failures
+      return true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    }
+  }
 
-    return new DownloadResult(coordsToUse, Set.copyOf(repos), pathInRepo, sha256);
+  private Set<URI> inDeclaredOrder(Set<URI> repos) {
+    return this.repos.stream().filter(repos::contains).collect(ImmutableSet.toImmutableSet());
   }
 
   private URI buildUri(URI baseUri, String pathInRepo) {
@@ -214,8 +584,7 @@ public class Downloader {
 
   private String calculateSha256(Path path) {
     try {
-      byte[] bytes = Files.readAllBytes(path);
-      return Hashing.sha256().hashBytes(bytes).toString();
+      return Checksums.sha256(path);
     } catch (IOException e) {
       throw new UncheckedIOException(e);
     }
@@ -0,0 +1,110 @@
+// Copyright 2024 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.github.bazelbuild.rules_jvm_external.resolver.remote;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import com.github.bazelbuild.rules_jvm_external.Checksums;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Streams a response body to a file, computing the sha256 of the bytes as they arrive. This avoids
+ * having to read the file a second time once the download is complete.
+ */
+class HashingBodySubscriber implements HttpResponse.BodySubscriber<DownloadedFile> {
+
+  private final HttpResponse.BodySubscriber<Path> delegate;
+  private final MessageDigest digest;
+  private final BooleanSupplier cancelled;
+  private Flow.Subscription subscription;
+  private volatile boolean abandoned;
+
+  private HashingBodySubscriber(Path path, BooleanSupplier cancelled) {
+    this.cancelled = cancelled;
+    // Truncate the file, since we may be retrying a request that has already written to it.
+    this.delegate = HttpResponse.BodySubscribers.ofFile(path, CREATE, WRITE, TRUNCATE_EXISTING);
+    try {
+      this.digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * A {@link HttpResponse.BodyHandler} writing to {@code path}. Each response gets a fresh digest,
+   * so retried requests hash only the bytes of the final attempt. Once {@code cancelled} returns
+   * true, the download is abandoned.
+   */
+  static HttpResponse.BodyHandler<DownloadedFile> ofFile(Path path, BooleanSupplier cancelled) {
+    return responseInfo -> new HashingBodySubscriber(path, cancelled);
+  }
+
+  @Override
+  public CompletionStage<DownloadedFile> getBody() {
+    return delegate
+        .getBody()
+        .thenApply(path -> new DownloadedFile(path, Checksums.toHex(digest.digest()), true));
+  }
+
+  @Override
+  public void onSubscribe(Flow.Subscription subscription) {
+    this.subscription = subscription;
+    delegate.onSubscribe(subscription);
+  }
+
+  @Override
+  public void onNext(List<ByteBuffer> items) {
+    if (abandoned) {
+      return;
+    }
+    if (cancelled.getAsBoolean()) {
+      abandoned = true;
+      subscription.cancel();
+      delegate.onError(new CancellationException("Download cancelled"));
+      return;
+    }
+
+    // Calls to `onNext` are never concurrent, so it's safe to update the digest here
+    for (ByteBuffer item : items) {
+      digest.update(item.duplicate());
+    }
+    delegate.onNext(items);
+  }
+
+  @Override
+  public void onError(Throwable throwable) {
+    if (!abandoned) {
+      delegate.onError(throwable);
+    }
+  }
+
+  @Override
+  public void onComplete() {
+    if (!abandoned) {
+      delegate.onComplete();
+    }
+  }
+}
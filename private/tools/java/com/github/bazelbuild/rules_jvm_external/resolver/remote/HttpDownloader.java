@@ -17,8 +17,11 @@ package com.github.bazelbuild.rules_jvm_external.resolver.remote;
 import static com.github.bazelbuild.rules_jvm_external.resolver.events.DownloadEvent.Stage.COMPLETE;
 import static com.github.bazelbuild.rules_jvm_external.resolver.events.DownloadEvent.Stage.STARTING;
 import static java.net.HttpURLConnection.HTTP_NOT_FOUND;
+import static java.net.HttpURLConnection.HTTP_OK;
 import static java.net.http.HttpClient.Redirect.ALWAYS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
+import com.github.bazelbuild.rules_jvm_external.Checksums;
 import com.github.bazelbuild.rules_jvm_external.resolver.events.DownloadEvent;
 import com.github.bazelbuild.rules_jvm_external.resolver.events.EventListener;
 import com.github.bazelbuild.rules_jvm_external.resolver.events.LogEvent;
@@ -37,9 +40,16 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Duration;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
 import java.util.logging.Logger;
 
 public class HttpDownloader {
@@ -51,9 +61,11 @@ public class HttpDownloader {
   private final HttpClient client;
   private final EventListener listener;
   private final Set<String> authenticationFailed = Collections.synchronizedSet(new HashSet<>());
+  private final LatencyScores scores;
 
   public HttpDownloader(Netrc netrc, EventListener listener) {
     this.listener = listener;
+    this.scores = new LatencyScores();
 
     HttpClient.Builder builder =
         HttpClient.newBuilder()
@@ -74,20 +86,45 @@ public class HttpDownloader {
               return null;
             }
             return new PasswordAuthentication(
-                credential.account(), credential.password().toCharArray());
+                credential.login(), credential.password().toCharArray());
           }
         };
     builder = builder.authenticator(authenticator);
     this.client = builder.build();
   }
 
-  public Path get(URI uriToGet) {
+  public DownloadedFile get(URI uriToGet) {
+    return join(getAsync(uriToGet));
+  }
+
+  /**
+   * Download {@code uriToGet} without blocking the calling thread. The returned future completes
+   * with {@code null} if the file could not be found.
+   */
+  public CompletableFuture<DownloadedFile> getAsync(URI uriToGet) {
+    return startGet(uriToGet).getResult();
+  }
+
+  /**
+   * Start downloading {@code uriToGet}, allowing the caller to see when the server first responds
+   * and to cancel the download if it is no longer needed.
+   */
+  InFlightDownload startGet(URI uriToGet) {
     if ("file".equals(uriToGet.getScheme())) {
       Path path = Paths.get(uriToGet);
+      DownloadedFile file = null;
       if (Files.exists(path)) {
-        return path;
+        try {
+          String sha256 = Checksums.sha256(path);
+          file = new DownloadedFile(path, sha256, false);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
       }
-      return null;
+      return new InFlightDownload(
+          CompletableFuture.completedFuture(file == null ? HTTP_NOT_FOUND : HTTP_OK),
+          CompletableFuture.completedFuture(file),
+          null);
     }
 
     HttpRequest request = startPreparingRequest(uriToGet).GET().build();
@@ -95,30 +132,69 @@ public class HttpDownloader {
     try {
       Path path = Files.createTempFile("resolver", "download");
 
-      HttpResponse<Path> response = makeRequest(request, HttpResponse.BodyHandlers.ofFile(path));
+      CompletableFuture<Integer> responded = new CompletableFuture<>();
+      AtomicBoolean cancelled = new AtomicBoolean();
+      HttpResponse.BodyHandler<DownloadedFile> handler =
+          responseInfo -> {
+            // We'll retry these, so this isn't the response we're waiting for
+            if (!RETRY_RESPONSE_CODES.contains(responseInfo.statusCode())) {
+              responded.complete(responseInfo.statusCode());
+            }
+            return HashingBodySubscriber.ofFile(path, cancelled::get).apply(responseInfo);
+          };
 
-      if (!isSuccessful(response)) {
-        return null;
-      }
+      CompletableFuture<DownloadedFile> result =
+          makeRequest(request, handler)
+              .thenApply(response -> isSuccessful(response) ? response.body() : null);
+      // We may never have had a response (eg. if we couldn't connect)
+      result.whenComplete(
+          (file, throwable) -> {
+            if (throwable != null) {
+              responded.completeExceptionally(throwable);
+            } else {
+              responded.complete(file == null ? HTTP_NOT_FOUND : HTTP_OK);
+            }
+            // Error pages and abandoned downloads are of no use to anyone
+            if (file == null) {
+              deleteQuietly(path);
+            }
+          });
 
-      return response.body();
+      return new InFlightDownload(responded, result, cancelled);
     } catch (IOException e) {
       throw new UncheckedIOException(e);
     }
   }
 
   public boolean head(URI uri) {
+    return join(headAsync(uri));
+  }
+
+  /** Check whether {@code uri} exists without blocking the calling thread. */
+  public CompletableFuture<Boolean> headAsync(URI uri) {
     if ("file".equals(uri.getScheme())) {
       Path path = Paths.get(uri);
-      return Files.exists(path);
+      return CompletableFuture.completedFuture(Files.exists(path));
     }
 
     HttpRequest request =
         startPreparingRequest(uri).method("HEAD", HttpRequest.BodyPublishers.noBody()).build();
 
-    HttpResponse<Void> response = makeRequest(request, HttpResponse.BodyHandlers.discarding());
+    return makeRequest(request, HttpResponse.BodyHandlers.discarding())
+        .thenApply(this::isSuccessful);
+  }
 
-    return isSuccessful(response);
+  /**
+   * Order {@code repositories} so that those which have responded most quickly and reliably so far
+   * come first.
+   */
+  List<URI> rank(Collection<URI> repositories) {
+    return scores.rank(repositories);
+  }
+
+  /** How long to wait for {@code uri} to respond before hedging the request elsewhere. */
+  Duration hedgeDelay(URI uri) {
+    return scores.hedgeDelay(uri);
   }
 
   private HttpRequest.Builder startPreparingRequest(URI uri) {
@@ -128,76 +204,121 @@ public class HttpDownloader {
         .timeout(Duration.ofMinutes(10));
   }
 
-  private <X> HttpResponse<X> makeRequest(
+  private <X> CompletableFuture<HttpResponse<X>> makeRequest(
       HttpRequest request, HttpResponse.BodyHandler<X> handler) {
     return doRequest(0, request, handler);
   }
 
-  private <X> HttpResponse<X> doRequest(
+  private <X> CompletableFuture<HttpResponse<X>> doRequest(
       int attemptCount, HttpRequest request, HttpResponse.BodyHandler<X> handler) {
     listener.onEvent(new DownloadEvent(STARTING, request.uri().toString()));
     LOG.fine(String.format("Downloading (attempt %d): %s", attemptCount, request.uri()));
 
+    // Record how long it takes for the server to start responding, regardless of the size of the
+    // body which follows.
+    long start = System.nanoTime();
+    HttpResponse.BodyHandler<X> timedHandler =
+        responseInfo -> {
+          scores.recordLatency(request.uri(), Duration.ofNanos(System.nanoTime() - start));
+          return handler.apply(responseInfo);
+        };
+
     // Slight pause, in case a previous attempt overwhelmed a server. We may be about to do it
-    // again,
-    // but this might just help a little.
-    try {
-      Thread.sleep(attemptCount * 500L);
-    } catch (InterruptedException e) {
-      Thread.currentThread().interrupt();
-      throw new RuntimeException(e);
+    // again, but this might just help a little.
+    CompletableFuture<HttpResponse<X>> sent;
+    if (attemptCount == 0) {
+      sent = client.sendAsync(request, timedHandler);
+    } else {
+      Executor delayed = CompletableFuture.delayedExecutor(attemptCount * 500L, MILLISECONDS);
+      sent =
+          CompletableFuture.runAsync(() -> {}, delayed)
+              .thenCompose(ignored -> client.sendAsync(request, timedHandler));
     }
 
-    try {
-      HttpResponse<X> response = client.send(request, handler);
-      LOG.fine(String.format("%s -> Got response %d%n", request.uri(), response.statusCode()));
+    return sent.handle(
+            (response, throwable) -> {
+              LOG.fine(String.format("Downloaded (attempt %d): %s", attemptCount, request.uri()));
+              listener.onEvent(new DownloadEvent(COMPLETE, request.uri().toString()));
 
-      // Do we want to retry the request?
-      if (RETRY_RESPONSE_CODES.contains(response.statusCode())) {
-        return doRequest(++attemptCount, request, handler);
-      }
+              if (throwable != null) {
+                return onFailure(attemptCount, request, handler, throwable);
+              }
+              return onResponse(attemptCount, request, handler, response);
+            })
+        .thenCompose(Function.identity());
+  }
 
-      if (UNAUTHENTICATED_RESPONSE_CODES.contains(response.statusCode())) {
-        logFailedAuthenticationIfRequired(request);
-        return new EmptyResponse<>(request, response.statusCode());
-      }
+  private <X> CompletableFuture<HttpResponse<X>> onResponse(
+      int attemptCount,
+      HttpRequest request,
+      HttpResponse.BodyHandler<X> handler,
+      HttpResponse<X> response) {
+    LOG.fine(String.format("%s -> Got response %d%n", request.uri(), response.statusCode()));
+
+    // Do we want to retry the request?
+    if (RETRY_RESPONSE_CODES.contains(response.statusCode())) {
+      scores.recordFailure(request.uri());
+      return doRequest(attemptCount + 1, request, handler);
+    }
 
-      return response;
-    } catch (ConnectException e) {
+    if (UNAUTHENTICATED_RESPONSE_CODES.contains(response.statusCode())) {
+      logFailedAuthenticationIfRequired(request);
+      return CompletableFuture.completedFuture(
+          new EmptyResponse<>(request, response.statusCode()));
+    }
+
+    return CompletableFuture.completedFuture(response);
+  }
+
+  private <X> CompletableFuture<HttpResponse<X>> onFailure(
+      int attemptCount,
+      HttpRequest request,
+      HttpResponse.BodyHandler<X> handler,
+      Throwable throwable) {
+    Throwable cause = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+    scores.recordFailure(request.uri());
+
+    if (cause instanceof ConnectException) {
       // Unable to connect to the remote server. Report the URL as not being found
       LOG.fine(String.format("Unable to connect to remote server: %s", request.uri()));
-      return new EmptyResponse<>(request, HTTP_NOT_FOUND);
-    } catch (IOException e) {
-      LOG.fine(String.format("Attempt %d failed for %s", attemptCount, request.uri()));
-
-      // We may have failed because of an authentication error. The `AuthenticationFilter`
-      // doesn't make it easy to detect this case (because it will only return a response
-      // with the unauthenticated error code if we'd not used _any_ authenticator in our
-      // HttpClient, so we have to examine the exception's error message and hope for the
-      // best. This is very, very nasty
-      if ("No credentials provided".equals(e.getMessage())) {
-        logFailedAuthenticationIfRequired(request);
-        return new EmptyResponse<>(request, 401);
-      }
+      return CompletableFuture.completedFuture(new EmptyResponse<>(request, HTTP_NOT_FOUND));
+    }
 
-      // There are many reasons we may have seen an IOException. One is when an HTTP/2 server sends
-      // a `GOAWAY` frame.
-      // Don't panic. Just have another go.
+    if (!(cause instanceof IOException)) {
+      return CompletableFuture.failedFuture(cause);
+    }
 
-      if (attemptCount < MAX_RETRY_COUNT) {
-        listener.onEvent(new DownloadEvent(COMPLETE, request.uri().toString()));
-        return doRequest(++attemptCount, request, handler);
-      }
+    LOG.fine(String.format("Attempt %d failed for %s", attemptCount, request.uri()));
 
-      // But in all other cases, get very upset.
-      throw new UncheckedIOException(e);
-    } catch (InterruptedException e) {
-      LOG.fine(String.format("Attempt %d interrupted for %s", attemptCount, request.uri()));
-      Thread.currentThread().interrupt();
-      throw new RuntimeException(e);
-    } finally {
-      LOG.fine(String.format("Downloaded (attempt %d): %s", attemptCount, request.uri()));
-      listener.onEvent(new DownloadEvent(COMPLETE, request.uri().toString()));
+    // We may have failed because of an authentication error. The `AuthenticationFilter`
+    // doesn't make it easy to detect this case (because it will only return a response
+    // with the unauthenticated error code if we'd not used _any_ authenticator in our
+    // HttpClient, so we have to examine the exception's error message and hope for the
+    // best. This is very, very nasty
+    if ("No credentials provided".equals(cause.getMessage())) {
+      logFailedAuthenticationIfRequired(request);
+      return CompletableFuture.completedFuture(new EmptyResponse<>(request, 401));
+    }
+
+    // There are many reasons we may have seen an IOException. One is when an HTTP/2 server sends
+    // a `GOAWAY` frame.
+    // Don't panic. Just have another go.
+    if (attemptCount < MAX_RETRY_COUNT) {
+      return doRequest(attemptCount + 1, request, handler);
+    }
+
+    // But in all other cases, get very upset.
+    return CompletableFuture.failedFuture(new UncheckedIOException((IOException) cause));
+  }
+
+  private <X> X join(CompletableFuture<X> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
     }
   }
 
@@ -214,7 +335,55 @@ public class HttpDownloader {
     }
   }
 
+  /** Remove a file we've downloaded but which nobody needs any more. */
+  static void deleteQuietly(Path path) {
+    try {
+      Files.deleteIfExists(path);
+    } catch (IOException e) {
+      LOG.fine(String.format("Unable to delete %s: %s", path, e.getMessage()));
+    }
+  }
+
   private boolean isSuccessful(HttpResponse<?> response) {
     return response.statusCode() > 199 && response.statusCode() < 300;
   }
+
+  /** A download which has been started, but which may not have finished yet. */
+  static class InFlightDownload {
+    private final CompletableFuture<Integer> responded;
+    private final CompletableFuture<DownloadedFile> result;
+    private final AtomicBoolean cancelled;
+
+    private InFlightDownload(
+        CompletableFuture<Integer> responded,
+        CompletableFuture<DownloadedFile> result,
+        AtomicBoolean cancelled) {
+      this.responded = responded;
+      this.result = result;
+      this.cancelled = cancelled;
+    }
+
+    /**
+     * Completes with the status code once the server has started sending a response, or
+     * exceptionally if the request failed.
+     */
+    CompletableFuture<Integer> getResponded() {
+      return responded;
+    }
+
+    /** Whether the file is present, which is known before the download completes. */
+    CompletableFuture<Boolean> isPresent() {
+      return responded.thenApply(code -> code > 199 && code < 300);
+    }
+
+    CompletableFuture<DownloadedFile> getResult() {
+      return result;
+    }
+
+    void cancel() {
+      if (cancelled != null) {
+        cancelled.set(true);
+      }
+    }
+  }
 }
@@ -0,0 +1,108 @@
+// Copyright 2024 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.github.bazelbuild.rules_jvm_external.resolver.remote;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Tracks an exponentially weighted moving average of the latency and error rate of each remote
+ * host, so that we can send requests to the quickest and most reliable hosts first.
+ */
+class LatencyScores {
+
+  // How much weight to give the most recent observation
+  private static final double ALPHA = 0.3;
+  // How much slower we consider a host that always fails to be
+  private static final double ERROR_PENALTY = 10;
+  private static final Duration MINIMUM_HEDGE_DELAY = Duration.ofMillis(50);
+  private static final Duration DEFAULT_HEDGE_DELAY = Duration.ofMillis(500);
+
+  private final Map<String, Score> scores = new ConcurrentHashMap<>();
+
+  void recordLatency(URI uri, Duration latency) {
+    scores.computeIfAbsent(key(uri), k -> new Score()).update(latency.toNanos(), false);
+  }
+
+  void recordFailure(URI uri) {
+    scores.computeIfAbsent(key(uri), k -> new Score()).update(-1, true);
+  }
+
+  /**
+   * Order the given repositories with the best scoring first. Repositories we know nothing about
+   * sort first, so that we learn about them, and ties retain their original order.
+   */
+  List<URI> rank(Collection<URI> repositories) {
+    // Take a snapshot of the costs, since they may be updated by other threads while we sort
+    Map<URI, Double> costs = new LinkedHashMap<>();
+    repositories.forEach(uri -> costs.put(uri, cost(uri)));
+
+    return costs.entrySet().stream()
+        .sorted(Map.Entry.comparingByValue())
+        .map(Map.Entry::getKey)
+        .collect(Collectors.toList());
+  }
+
+  /** How long to wait for a response from {@code uri} before trying somewhere else as well. */
+  Duration hedgeDelay(URI uri) {
+    Score score = scores.get(key(uri));
+    double latency = score == null ? -1 : score.getLatency();
+    if (latency < 0) {
+      return DEFAULT_HEDGE_DELAY;
+    }
+    Duration delay = Duration.ofNanos((long) (3 * latency));
+    return delay.compareTo(MINIMUM_HEDGE_DELAY) < 0 ? MINIMUM_HEDGE_DELAY : delay;
+  }
+
+  private double cost(URI uri) {
+    Score score = scores.get(key(uri));
+    if (score == null) {
+      return 0;
+    }
+    return score.getCost();
+  }
+
+  private String key(URI uri) {
+    return uri.getScheme() + "://" + uri.getAuthority();
+  }
+
+  private static class Score {
+    private double latency = -1;
+    private double errorRate;
+
+    synchronized void update(long latencyNanos, boolean failed) {
+      errorRate = ALPHA * (failed ? 1 : 0) + (1 - ALPHA) * errorRate;
+      if (latencyNanos < 0) {
+        return;
+      }
+      latency = latency < 0 ? latencyNanos : ALPHA * latencyNanos + (1 - ALPHA) * latency;
+    }
+
+    synchronized double getLatency() {
+      return latency;
+    }
+
+    synchronized double getCost() {
+      double base = latency < 0 ? DEFAULT_HEDGE_DELAY.toNanos() : Math.max(latency, 1);
+      return base * (1 + ERROR_PENALTY * errorRate);
+    }
+  }
+}
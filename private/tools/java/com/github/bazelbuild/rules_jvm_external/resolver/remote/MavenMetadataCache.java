@@ -0,0 +1,126 @@
+// Copyright 2024 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.github.bazelbuild.rules_jvm_external.resolver.remote;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * An in-memory cache of the versions listed in each {@code maven-metadata.xml} file we've fetched.
+ * Each file is fetched at most once, no matter how many artifacts in the same group and artifact id
+ * we ask about.
+ */
+class MavenMetadataCache {
+
+  private static final Logger LOG = Logger.getLogger(MavenMetadataCache.class.getName());
+
+  private final HttpDownloader httpDownloader;
+  private final Map<URI, CompletableFuture<Set<String>>> versions = new ConcurrentHashMap<>();
+
+  MavenMetadataCache(HttpDownloader httpDownloader) {
+    this.httpDownloader = httpDownloader;
+  }
+
+  /**
+   * The versions listed in the metadata found at {@code metadataUri}. If the metadata is missing or
+   * can't be read, this is the empty set.
+   */
+  CompletableFuture<Set<String>> getVersions(URI metadataUri) {
+    return versions.computeIfAbsent(
+        metadataUri,
+        uri ->
+            httpDownloader
+                .getAsync(uri)
+                .thenApply(file -> file == null ? Set.<String>of() : parse(uri, file))
+                .exceptionally(
+                    throwable -> {
+                      LOG.fine(String.format("Unable to fetch %s: %s%n", uri, throwable));
+                      return Set.of();
+                    }));
+  }
+
+  private Set<String> parse(URI uri, DownloadedFile file) {
+    Set<String> found = new TreeSet<>();
+    try (InputStream is = Files.newInputStream(file.getPath())) {
+      DocumentBuilder builder = newDocumentBuilderFactory().newDocumentBuilder();
+      // Problems are reported by the exception we log, so don't print them to stderr as well
+      builder.setErrorHandler(new DefaultHandler());
+      Document document = builder.parse(is);
+
+      // <metadata>
+      //   <versioning>
+      //     <versions>
+      //       <version>1.0</version>
+      //     </versions>
+      //   </versioning>
+      // </metadata>
+      NodeList nodes = document.getElementsByTagName("version");
+      for (int i = 0; i < nodes.getLength(); i++) {
+        // The top-level `metadata/version` element isn't a list of the available versions
+        if ("versions".equals(nodes.item(i).getParentNode().getNodeName())) {
+          found.add(nodes.item(i).getTextContent().trim());
+        }
+      }
+    } catch (IOException | ParserConfigurationException | SAXException e) {
+      LOG.fine(String.format("Unable to parse %s: %s%n", uri, e));
+    } finally {
+      deleteIfTemporary(file);
+    }
+    return Set.copyOf(found);
+  }
+
+  /**
+   * The metadata comes from remote repositories, so don't allow it to declare a DTD, or to pull in
+   * any other content.
+   */
+  private static DocumentBuilderFactory newDocumentBuilderFactory()
+      throws ParserConfigurationException {
+    DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+    factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+    factory.setFeature("http://xml.org/sax/features/external-general-entities", false);
+    factory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+    factory.setXIncludeAware(false);
+    factory.setExpandEntityReferences(false);
+    return factory;
+  }
+
+  private void deleteIfTemporary(DownloadedFile file) {
+    if (!file.isTemporary()) {
+      return;
+    }
+    Path path = file.getPath();
+    try {
+      Files.deleteIfExists(path);
+    } catch (IOException e) {
+      LOG.fine(String.format("Unable to delete %s: %s%n", path, e));
+    }
+  }
+}
@@ -0,0 +1,181 @@
+// Copyright 2024 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.github.bazelbuild.rules_jvm_external.resolver.remote;
+
+import com.github.bazelbuild.rules_jvm_external.Checksums;
+import com.github.bazelbuild.rules_jvm_external.Coordinates;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.maven.model.DistributionManagement;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Relocation;
+import org.apache.maven.model.io.xpp3.MavenXpp3Reader;
+import org.codehaus.plexus.util.ReaderFactory;
+import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
+
+/**
+ * The parts of each POM file that we need once resolution has been done, keyed by the coordinates
+ * of the POM and the digest of its contents. This allows the same POM to be shared by everything
+ * that needs to look at it, so that it's only parsed once no matter how many times it's asked for.
+ */
+public class PomCache {
+
+  private final Map<Key, ParsedPom> poms = new ConcurrentHashMap<>();
+
+  /** The parsed contents of {@code pom}, which is the POM file for {@code coords}. */
+  public ParsedPom get(Coordinates coords, Path pom) throws IOException {
+    byte[] bytes = Files.readAllBytes(pom);
+    return get(new Key(coords, sha256(bytes)), pom, () -> bytes);
+  }
+
+  /**
+   * The parsed contents of {@code pom}, which is the POM file for {@code coords} and has the given
+   * {@code sha256}. The file is only read if no POM with the same digest has been parsed before.
+   */
+  public ParsedPom get(Coordinates coords, String sha256, Path pom) throws IOException {
+    return get(new Key(coords, sha256), pom, () -> Files.readAllBytes(pom));
+  }
+
+  private ParsedPom get(Key key, Path pom, Contents contents) throws IOException {
+    ParsedPom parsed = poms.get(key);
+    if (parsed != null) {
+      return parsed;
+    }
+
+    // Read and parse outside the map, so other threads aren't blocked while we do I/O. Two threads
+    // may occasionally parse the same POM, but only the first result is kept.
+    parsed = parse(pom, contents.read());
+    ParsedPom existing = poms.putIfAbsent(key, parsed);
+    return existing == null ? parsed : existing;
+  }
+
+  private static ParsedPom parse(Path pom, byte[] bytes) throws IOException {
+    try (Reader reader = ReaderFactory.newXmlReader(new ByteArrayInputStream(bytes))) {
+      Model model = new MavenXpp3Reader().read(reader);
+
+      String packaging = model.getPackaging() == null ? null : model.getPackaging().trim();
+
+      Coordinates relocation = null;
+      DistributionManagement distributionManagement = model.getDistributionManagement();
+      if (distributionManagement != null && distributionManagement.getRelocation() != null) {
+        Relocation relocated = distributionManagement.getRelocation();
+        // Anything not mentioned in the relocation stays the same
+        relocation =
+            new Coordinates(
+                Optional.ofNullable(relocated.getGroupId()).orElse(groupIdOf(model)),
+                Optional.ofNullable(relocated.getArtifactId()).orElse(model.getArtifactId()),
+                null,
+                null,
+                Optional.ofNullable(relocated.getVersion()).orElse(versionOf(model)));
+      }
+
+      return new ParsedPom(packaging, relocation);
+    } catch (XmlPullParserException e) {
+      throw new IOException("Unable to parse " + pom, e);
+    }
+  }
+
+  // The group id and version may be inherited from the parent
+  private static String groupIdOf(Model model) {
+    if (model.getGroupId() == null && model.getParent() != null) {
+      return model.getParent().getGroupId();
+    }
+    return model.getGroupId();
+  }
+
+  private static String versionOf(Model model) {
+    if (model.getVersion() == null && model.getParent() != null) {
+      return model.getParent().getVersion();
+    }
+    return model.getVersion();
+  }
+
+  private static String sha256(byte[] bytes) {
+    try {
+      return Checksums.toHex(MessageDigest.getInstance(Checksums.SHA_256).digest(bytes));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private interface Contents {
+    byte[] read() throws IOException;
+  }
+
+  private static class Key {
+    private final String groupId;
+    private final String artifactId;
+    private final String version;
+    private final String sha256;
+
+    private Key(Coordinates coords, String sha256) {
+      // The POM is shared by every classifier and extension of an artifact
+      this.groupId = coords.getGroupId();
+      this.artifactId = coords.getArtifactId();
+      this.version = coords.getVersion();
+      this.sha256 = Objects.requireNonNull(sha256, "sha256");
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key that = (Key) o;
+      return groupId.equals(that.groupId)
+          && artifactId.equals(that.artifactId)
+          && Objects.equals(version, that.version)
+          && sha256.equals(that.sha256);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(groupId, artifactId, version, sha256);
+    }
+  }
+
+  /** The details of a POM file which are needed after resolution. */
+  public static class ParsedPom {
+    private final String packaging;
+    private final Coordinates relocation;
+
+    private ParsedPom(String packaging, Coordinates relocation) {
+      this.packaging = packaging;
+      this.relocation = relocation;
+    }
+
+    /** The declared packaging, which is {@code jar} unless the POM says otherwise. */
+    public String getPackaging() {
+      return packaging;
+    }
+
+    /** Where the artifact has been relocated to, if it has been. */
+    public Optional<Coordinates> getRelocation() {
+      return Optional.ofNullable(relocation);
+    }
+  }
+}
@@ -0,0 +1,181 @@
+// Copyright 2024 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.github.bazelbuild.rules_jvm_external.worker;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.github.bazelbuild.rules_jvm_external.DaemonThreadFactory;
+import com.github.bazelbuild.rules_jvm_external.worker.WorkerProtocol.WorkRequest;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a command line tool as a Bazel persistent worker, so that many actions can share one warm
+ * JVM rather than each paying for a fresh one. Both singleplex and multiplex workers are supported:
+ * requests with a non-zero request id are run concurrently.
+ *
+ * <p>Tools should pass their arguments to {@link #isPersistentWorker(String[])} first, and
+ * otherwise run once with {@link #expandParamFiles(String[])}, since Bazel always uses a param file
+ * for actions that may be run by a worker.
+ */
+public class PersistentWorker {
+
+  private static final String PERSISTENT_WORKER_FLAG = "--persistent_worker";
+
+  /** The body of a tool's {@code main} method. */
+  public interface Tool {
+    void run(String[] args) throws Exception;
+  }
+
+  private PersistentWorker() {
+    // Utility methods
+  }
+
+  public static boolean isPersistentWorker(String[] args) {
+    return Arrays.asList(args).contains(PERSISTENT_WORKER_FLAG);
+  }
+
+  /**
+   * Replace each {@code @path} argument with the lines of the file it names, as written by Bazel
+   * for a param file in the {@code multiline} format.
+   */
+  public static String[] expandParamFiles(String[] args) throws IOException {
+    List<String> expanded = new ArrayList<>();
+    for (String arg : args) {
+      if (arg.startsWith("@")) {
+        expanded.addAll(Files.readAllLines(Paths.get(arg.substring(1)), UTF_8));
+      } else {
+        expanded.add(arg);
+      }
+    }
+    return expanded.toArray(new String[0]);
+  }
+
+  /** Serve requests from Bazel on stdin until it closes the stream. */
+  public static void run(Tool tool) throws IOException {
+    run(tool, System.in, new BufferedOutputStream(System.out));
+  }
+
+  // Visible for testing
+  static void run(Tool tool, InputStream in, OutputStream out) throws IOException {
+    // Responses are the only thing that may be written to stdout, so anything a tool prints while
+    // handling a request is sent back to Bazel as that request's output.
+    PrintStream originalOut = System.out;
+    PrintStream originalErr = System.err;
+    PrintStream captured = new PrintStream(new RequestOutput(originalErr), true, UTF_8);
+    System.setOut(captured);
+    System.setErr(captured);
+
+    ExecutorService executor =
+        Executors.newCachedThreadPool(new DaemonThreadFactory("persistent-worker"));
+    try {
+      for (WorkRequest request = WorkerProtocol.readRequest(in);
+          request != null;
+          request = WorkerProtocol.readRequest(in)) {
+        if (request.cancel) {
+          // We don't claim to support cancellation, so there's nothing to do
+          continue;
+        }
+
+        WorkRequest toRun = request;
+        if (toRun.requestId == 0) {
+          respond(out, toRun.requestId, tool, toRun.arguments);
+        } else {
+          executor.execute(() -> respond(out, toRun.requestId, tool, toRun.arguments));
+        }
+      }
+    } finally {
+      executor.shutdown();
+      try {
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      System.setOut(originalOut);
+      System.setErr(originalErr);
+    }
+  }
+
+  private static void respond(OutputStream out, int requestId, Tool tool, List<String> arguments) {
+    int exitCode = 0;
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    RequestOutput.CURRENT.set(output);
+    try {
+      tool.run(expandParamFiles(arguments.toArray(new String[0])));
+    } catch (Exception | Error e) {
+      // Whatever happens, Bazel is waiting for a response
+      exitCode = 1;
+      e.printStackTrace(System.err);
+    } finally {
+      RequestOutput.CURRENT.remove();
+    }
+
+    synchronized (out) {
+      try {
+        WorkerProtocol.writeResponse(out, requestId, exitCode, output.toString(UTF_8));
+        out.flush();
+      } catch (IOException e) {
+        // Bazel has gone away, and there's no one left to tell
+        e.printStackTrace();
+      }
+    }
+  }
+
+  /**
+   * Sends whatever is written to the output of the request being handled by the current thread.
+   * Output from any other thread, such as one a tool started itself, goes to the worker's log.
+   */
+  private static class RequestOutput extends OutputStream {
+    static final ThreadLocal<ByteArrayOutputStream> CURRENT = new ThreadLocal<>();
+
+    private final OutputStream log;
+
+    RequestOutput(OutputStream log) {
+      this.log = log;
+    }
+
+    private OutputStream target() {
+      ByteArrayOutputStream current = CURRENT.get();
+      return current == null ? log : current;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      target().write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      target().write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+      log.flush();
+    }
+  }
+}
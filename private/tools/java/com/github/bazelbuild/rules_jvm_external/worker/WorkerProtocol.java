@@ -0,0 +1,170 @@
+// Copyright 2024 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.github.bazelbuild.rules_jvm_external.worker;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Just enough of the protocol buffer wire format to read a Bazel {@code WorkRequest} and write a
+ * {@code WorkResponse}, as defined in {@code worker_protocol.proto}. The tools that use this are
+ * needed to import every jar from a {@code maven_install}, so they can't depend on the protobuf
+ * runtime from one.
+ */
+class WorkerProtocol {
+
+  private static final int VARINT = 0;
+  private static final int FIXED64 = 1;
+  private static final int LENGTH_DELIMITED = 2;
+  private static final int FIXED32 = 5;
+
+  private WorkerProtocol() {
+    // Utility methods
+  }
+
+  /** A single request from Bazel. Inputs, verbosity and the sandbox directory are ignored. */
+  static class WorkRequest {
+    final List<String> arguments;
+    final int requestId;
+    final boolean cancel;
+
+    WorkRequest(List<String> arguments, int requestId, boolean cancel) {
+      this.arguments = arguments;
+      this.requestId = requestId;
+      this.cancel = cancel;
+    }
+  }
+
+  /** Read the next length-delimited request, or return {@code null} if the stream has ended. */
+  static WorkRequest readRequest(InputStream in) throws IOException {
+    int first = in.read();
+    if (first == -1) {
+      return null;
+    }
+    byte[] message = readBytes(in, (int) readVarint(in, first));
+
+    InputStream is = new ByteArrayInputStream(message);
+    List<String> arguments = new ArrayList<>();
+    int requestId = 0;
+    boolean cancel = false;
+    for (int b = is.read(); b != -1; b = is.read()) {
+      long tag = readVarint(is, b);
+      int field = (int) (tag >>> 3);
+      int wireType = (int) (tag & 0x7);
+
+      if (field == 1 && wireType == LENGTH_DELIMITED) {
+        arguments.add(new String(readBytes(is, (int) readVarint(is)), UTF_8));
+      } else if (field == 3 && wireType == VARINT) {
+        requestId = (int) readVarint(is);
+      } else if (field == 4 && wireType == VARINT) {
+        cancel = readVarint(is) != 0;
+      } else {
+        skip(is, wireType);
+      }
+    }
+    return new WorkRequest(arguments, requestId, cancel);
+  }
+
+  /** Write a length-delimited response to {@code out}, without flushing it. */
+  static void writeResponse(OutputStream out, int requestId, int exitCode, String output)
+      throws IOException {
+    ByteArrayOutputStream message = new ByteArrayOutputStream();
+    if (exitCode != 0) {
+      writeVarint(message, 1 << 3 | VARINT);
+      // Negative int32 values are sign-extended to ten bytes
+      writeVarint(message, exitCode);
+    }
+    if (!output.isEmpty()) {
+      byte[] bytes = output.getBytes(UTF_8);
+      writeVarint(message, 2 << 3 | LENGTH_DELIMITED);
+      writeVarint(message, bytes.length);
+      message.write(bytes);
+    }
+    if (requestId != 0) {
+      writeVarint(message, 3 << 3 | VARINT);
+      writeVarint(message, requestId);
+    }
+
+    writeVarint(out, message.size());
+    message.writeTo(out);
+  }
+
+  private static void skip(InputStream is, int wireType) throws IOException {
+    switch (wireType) {
+      case VARINT:
+        readVarint(is);
+        break;
+
+      case FIXED64:
+        readBytes(is, 8);
+        break;
+
+      case LENGTH_DELIMITED:
+        readBytes(is, (int) readVarint(is));
+        break;
+
+      case FIXED32:
+        readBytes(is, 4);
+        break;
+
+      default:
+        throw new IOException("Unsupported wire type in work request: " + wireType);
+    }
+  }
+
+  private static long readVarint(InputStream in) throws IOException {
+    return readVarint(in, in.read());
+  }
+
+  private static long readVarint(InputStream in, int first) throws IOException {
+    long value = 0;
+    int b = first;
+    for (int shift = 0; shift < 64; shift += 7) {
+      if (b == -1) {
+        throw new EOFException("Work request ended part way through a varint");
+      }
+      value |= (long) (b & 0x7f) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+      b = in.read();
+    }
+    throw new IOException("Malformed varint in work request");
+  }
+
+  private static void writeVarint(OutputStream out, long value) throws IOException {
+    while ((value & ~0x7fL) != 0) {
+      out.write((int) (value & 0x7f) | 0x80);
+      value >>>= 7;
+    }
+    out.write((int) value);
+  }
+
+  private static byte[] readBytes(InputStream in, int length) throws IOException {
+    byte[] bytes = in.readNBytes(length);
+    if (bytes.length != length) {
+      throw new EOFException("Work request ended early");
+    }
+    return bytes;
+  }
+}
@@ -0,0 +1,95 @@
+// Copyright 2024 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.github.bazelbuild.rules_jvm_external.zip;
+
+/**
+ * An entry read from the central directory of a {@link RawZipFile}. Unlike a {@link
+ * java.util.zip.ZipEntry}, this records where the entry's compressed data lives so that it can be
+ * copied into another zip without being inflated and deflated again.
+ */
+public class RawZipEntry {
+
+  private final String name;
+  private final int method;
+  private final long crc;
+  private final long compressedSize;
+  private final long size;
+  private final long localHeaderOffset;
+  private final long dosTime;
+  private final byte[] extra;
+
+  RawZipEntry(
+      String name,
+      int method,
+      long crc,
+      long compressedSize,
+      long size,
+      long localHeaderOffset,
+      long dosTime,
+      byte[] extra) {
+    this.name = name;
+    this.method = method;
+    this.crc = crc;
+    this.compressedSize = compressedSize;
+    this.size = size;
+    this.localHeaderOffset = localHeaderOffset;
+    this.dosTime = dosTime;
+    this.extra = extra;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /** Either {@link java.util.zip.ZipEntry#STORED} or {@link java.util.zip.ZipEntry#DEFLATED}. */
+  public int getMethod() {
+    return method;
+  }
+
+  public long getCrc() {
+    return crc;
+  }
+
+  public long getCompressedSize() {
+    return compressedSize;
+  }
+
+  public long getSize() {
+    return size;
+  }
+
+  public boolean isDirectory() {
+    return name.endsWith("/");
+  }
+
+  long getLocalHeaderOffset() {
+    return localHeaderOffset;
+  }
+
+  /** The MS-DOS date and time recorded in the central directory. */
+  long getDosTime() {
+    return dosTime;
+  }
+
+  /** The extra fields from the central directory, without any zip64 sizes or offsets. */
+  byte[] getExtra() {
+    return extra;
+  }
+
+  @Override
+  public String toString() {
+    return name;
+  }
+}
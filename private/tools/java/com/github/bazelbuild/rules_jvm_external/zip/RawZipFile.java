@@ -0,0 +1,337 @@
+// Copyright 2024 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.github.bazelbuild.rules_jvm_external.zip;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.zip.ZipEntry.DEFLATED;
+import static java.util.zip.ZipEntry.STORED;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * A zip file read directly from its central directory. This gives access to each entry's
+ * compressed data as well as its contents, which allows a {@link StableZipWriter} to copy entries
+ * from one zip to another without recompressing them.
+ *
+ * <p>Reads are positional, so a single instance may be shared between threads.
+ */
+public class RawZipFile implements Closeable {
+
+  private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+  private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+  private static final int END_SIGNATURE = 0x06054b50;
+  private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+  private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+  private static final int LOCAL_HEADER_SIZE = 30;
+  private static final int CENTRAL_HEADER_SIZE = 46;
+  private static final int END_SIZE = 22;
+  private static final int ZIP64_END_SIZE = 56;
+  private static final int ZIP64_LOCATOR_SIZE = 20;
+  private static final int ZIP64_EXTRA_ID = 0x0001;
+  private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+
+  private final Path path;
+  private final FileChannel channel;
+  private final List<RawZipEntry> entries;
+  private final Map<String, RawZipEntry> entriesByName;
+
+  public RawZipFile(Path path) throws IOException {
+    this.path = path;
+    this.channel = FileChannel.open(path, StandardOpenOption.READ);
+    try {
+      this.entries = Collections.unmodifiableList(readCentralDirectory());
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+
+    // As with `java.util.zip.ZipFile`, the last entry with a given name is the one that's found.
+    this.entriesByName = new HashMap<>();
+    for (RawZipEntry entry : entries) {
+      entriesByName.put(entry.getName(), entry);
+    }
+  }
+
+  private RawZipFile(RawZipFile closed) throws IOException {
+    this.path = closed.path;
+    this.channel = FileChannel.open(path, StandardOpenOption.READ);
+    this.entries = closed.entries;
+    this.entriesByName = closed.entriesByName;
+  }
+
+  /**
+   * Open the same file again after this instance has been closed, reusing the central directory
+   * that has already been read.
+   */
+  RawZipFile reopen() throws IOException {
+    return new RawZipFile(this);
+  }
+
+  public Path getPath() {
+    return path;
+  }
+
+  /** All the entries in the zip, in the order they appear in the central directory. */
+  public List<RawZipEntry> getEntries() {
+    return entries;
+  }
+
+  /** The entry called {@code name}, or {@code null} if there's no such entry. */
+  public RawZipEntry getEntry(String name) {
+    return entriesByName.get(name);
+  }
+
+  /** The uncompressed contents of {@code entry}. */
+  public InputStream getInputStream(RawZipEntry entry) throws IOException {
+    InputStream compressed = getCompressedInputStream(entry);
+    switch (entry.getMethod()) {
+      case STORED:
+        return compressed;
+
+      case DEFLATED:
+        return new EntryInflaterInputStream(compressed);
+
+      default:
+        compressed.close();
+        throw new ZipException(
+            String.format(
+                "Unsupported compression method %d for %s in %s",
+                entry.getMethod(), entry.getName(), path));
+    }
+  }
+
+  /** The data of {@code entry} exactly as it is stored in the zip. */
+  InputStream getCompressedInputStream(RawZipEntry entry) throws IOException {
+    ByteBuffer header = read(entry.getLocalHeaderOffset(), LOCAL_HEADER_SIZE);
+    if (header.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+      throw new ZipException(
+          String.format("Invalid local header for %s in %s", entry.getName(), path));
+    }
+    long dataOffset =
+        entry.getLocalHeaderOffset()
+            + LOCAL_HEADER_SIZE
+            + Short.toUnsignedInt(header.getShort(26))
+            + Short.toUnsignedInt(header.getShort(28));
+    return new RangeInputStream(channel, dataOffset, entry.getCompressedSize());
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  private List<RawZipEntry> readCentralDirectory() throws IOException {
+    long endOffset = findEndOfCentralDirectory();
+    ByteBuffer end = read(endOffset, END_SIZE);
+    long centralDirectorySize = Integer.toUnsignedLong(end.getInt(12));
+    long centralDirectoryOffset = Integer.toUnsignedLong(end.getInt(16));
+    long centralDirectoryEnd = endOffset;
+
+    if (endOffset >= ZIP64_LOCATOR_SIZE + ZIP64_END_SIZE
+        && read(endOffset - ZIP64_LOCATOR_SIZE, 4).getInt(0) == ZIP64_LOCATOR_SIGNATURE) {
+      long zip64EndOffset = endOffset - ZIP64_LOCATOR_SIZE - ZIP64_END_SIZE;
+      ByteBuffer zip64End = read(zip64EndOffset, ZIP64_END_SIZE);
+      if (zip64End.getInt(0) != ZIP64_END_SIGNATURE) {
+        throw new ZipException("Invalid zip64 end of central directory in " + path);
+      }
+      centralDirectorySize = zip64End.getLong(40);
+      centralDirectoryOffset = zip64End.getLong(48);
+      centralDirectoryEnd = zip64EndOffset;
+    }
+
+    // Anything prepended to the zip (such as a launcher script) shifts every offset recorded in it.
+    long centralDirectoryStart = centralDirectoryEnd - centralDirectorySize;
+    long prefix = centralDirectoryStart - centralDirectoryOffset;
+    if (centralDirectoryStart < 0 || prefix < 0 || centralDirectorySize > Integer.MAX_VALUE) {
+      throw new ZipException("Invalid central directory in " + path);
+    }
+
+    ByteBuffer buffer = read(centralDirectoryStart, (int) centralDirectorySize);
+    List<RawZipEntry> found = new ArrayList<>();
+    int pos = 0;
+    while (pos + CENTRAL_HEADER_SIZE <= buffer.limit()
+        && buffer.getInt(pos) == CENTRAL_HEADER_SIGNATURE) {
+      int flags = Short.toUnsignedInt(buffer.getShort(pos + 8));
+      int method = Short.toUnsignedInt(buffer.getShort(pos + 10));
+      long dosTime = Integer.toUnsignedLong(buffer.getInt(pos + 12));
+      long crc = Integer.toUnsignedLong(buffer.getInt(pos + 16));
+      long compressedSize = Integer.toUnsignedLong(buffer.getInt(pos + 20));
+      long size = Integer.toUnsignedLong(buffer.getInt(pos + 24));
+      int nameLength = Short.toUnsignedInt(buffer.getShort(pos + 28));
+      int extraLength = Short.toUnsignedInt(buffer.getShort(pos + 30));
+      int commentLength = Short.toUnsignedInt(buffer.getShort(pos + 32));
+      long offset = Integer.toUnsignedLong(buffer.getInt(pos + 42));
+
+      int next = pos + CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+      if (next > buffer.limit()) {
+        throw new ZipException("Truncated central directory in " + path);
+      }
+      if ((flags & 1) != 0) {
+        throw new ZipException("Encrypted zip entries are not supported: " + path);
+      }
+
+      byte[] name = new byte[nameLength];
+      buffer.duplicate().position(pos + CENTRAL_HEADER_SIZE).get(name);
+
+      // Sizes and offsets too large for the header are found in the zip64 extra field instead.
+      // That's only meaningful for this zip, so it's not kept with the other extra fields.
+      ByteArrayOutputStream otherExtra = new ByteArrayOutputStream();
+      int extra = pos + CENTRAL_HEADER_SIZE + nameLength;
+      int extraEnd = extra + extraLength;
+      while (extra + 4 <= extraEnd) {
+        int id = Short.toUnsignedInt(buffer.getShort(extra));
+        int length = Short.toUnsignedInt(buffer.getShort(extra + 2));
+        if (id != ZIP64_EXTRA_ID) {
+          byte[] field = new byte[Math.min(4 + length, extraEnd - extra)];
+          buffer.duplicate().position(extra).get(field);
+          otherExtra.write(field, 0, field.length);
+        } else {
+          int field = extra + 4;
+          if (size == ZIP64_MAGIC && field + 8 <= extraEnd) {
+            size = buffer.getLong(field);
+            field += 8;
+          }
+          if (compressedSize == ZIP64_MAGIC && field + 8 <= extraEnd) {
+            compressedSize = buffer.getLong(field);
+            field += 8;
+          }
+          if (offset == ZIP64_MAGIC && field + 8 <= extraEnd) {
+            offset = buffer.getLong(field);
+          }
+        }
+        extra += 4 + length;
+      }
+
+      found.add(
+          new RawZipEntry(
+              new String(name, UTF_8),
+              method,
+              crc,
+              compressedSize,
+              size,
+              offset + prefix,
+              dosTime,
+              otherExtra.toByteArray()));
+      pos = next;
+    }
+    return found;
+  }
+
+  private long findEndOfCentralDirectory() throws IOException {
+    long fileSize = channel.size();
+    if (fileSize < END_SIZE) {
+      throw new ZipException("Not a zip file: " + path);
+    }
+
+    // The end of central directory record is followed by a comment of up to 64k.
+    long searchStart = Math.max(0, fileSize - END_SIZE - 0xFFFF);
+    ByteBuffer tail = read(searchStart, (int) (fileSize - searchStart));
+    for (int pos = tail.limit() - END_SIZE; pos >= 0; pos--) {
+      if (tail.getInt(pos) == END_SIGNATURE
+          && pos + END_SIZE + Short.toUnsignedInt(tail.getShort(pos + 20)) <= tail.limit()) {
+        return searchStart + pos;
+      }
+    }
+    throw new ZipException("Unable to find end of central directory in " + path);
+  }
+
+  private ByteBuffer read(long offset, int length) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, offset + buffer.position()) == -1) {
+        throw new EOFException("Unexpected end of " + path);
+      }
+    }
+    return buffer.flip();
+  }
+
+  private static class RangeInputStream extends InputStream {
+    private final FileChannel channel;
+    private long position;
+    private long remaining;
+
+    RangeInputStream(FileChannel channel, long position, long length) {
+      this.channel = channel;
+      this.position = position;
+      this.remaining = length;
+    }
+
+    @Override
+    public int read() throws IOException {
+      byte[] single = new byte[1];
+      return read(single, 0, 1) == -1 ? -1 : Byte.toUnsignedInt(single[0]);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (remaining <= 0) {
+        return -1;
+      }
+      int read = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, remaining)), position);
+      if (read == -1) {
+        throw new EOFException("Unexpected end of zip entry");
+      }
+      position += read;
+      remaining -= read;
+      return read;
+    }
+  }
+
+  private static class EntryInflaterInputStream extends InflaterInputStream {
+    private boolean eof;
+
+    EntryInflaterInputStream(InputStream compressed) {
+      super(compressed, new Inflater(true), 8192);
+    }
+
+    @Override
+    protected void fill() throws IOException {
+      if (eof) {
+        throw new EOFException("Unexpected end of ZLIB input stream");
+      }
+      len = in.read(buf, 0, buf.length);
+      if (len == -1) {
+        // A "nowrap" inflater needs an extra dummy byte after the compressed data.
+        buf[0] = 0;
+        len = 1;
+        eof = true;
+      }
+      inf.setInput(buf, 0, len);
+    }
+
+    @Override
+    public void close() throws IOException {
+      super.close();
+      inf.end();
+    }
+  }
+}
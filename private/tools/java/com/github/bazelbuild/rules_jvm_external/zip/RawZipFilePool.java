@@ -0,0 +1,89 @@
+// Copyright 2024 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.github.bazelbuild.rules_jvm_external.zip;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps a bounded number of {@link RawZipFile}s open, so that tools reading entries from many zips
+ * in an arbitrary order neither run out of file handles nor open and parse the same zip over and
+ * over again. The central directory of each zip is only ever read once.
+ *
+ * <p>A {@link RawZipFile} returned by {@link #get(Path)} may be closed by any later call, so it
+ * should not be held on to.
+ */
+public class RawZipFilePool implements Closeable {
+
+  private final int maxOpen;
+  // In access order, so that the least recently used zip is the first to be closed.
+  private final Map<Path, RawZipFile> open = new LinkedHashMap<>(16, 0.75f, true);
+  private final Map<Path, RawZipFile> closed = new HashMap<>();
+
+  public RawZipFilePool(int maxOpen) {
+    if (maxOpen < 1) {
+      throw new IllegalArgumentException("At least one zip must be allowed to be open");
+    }
+    this.maxOpen = maxOpen;
+  }
+
+  public synchronized RawZipFile get(Path path) throws IOException {
+    RawZipFile file = open.get(path);
+    if (file != null) {
+      return file;
+    }
+
+    RawZipFile previous = closed.remove(path);
+    file = previous == null ? new RawZipFile(path) : previous.reopen();
+    open.put(path, file);
+
+    if (open.size() > maxOpen) {
+      Iterator<Map.Entry<Path, RawZipFile>> iterator = open.entrySet().iterator();
+      Map.Entry<Path, RawZipFile> eldest = iterator.next();
+      iterator.remove();
+      eldest.getValue().close();
+      closed.put(eldest.getKey(), eldest.getValue());
+    }
+
+    return file;
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    IOException failure = null;
+    for (RawZipFile file : open.values()) {
+      try {
+        file.close();
+      } catch (IOException e) {
+        if (failure == null) {
+          failure = e;
+        } else {
+          failure.addSuppressed(e);
+        }
+      }
+    }
+    open.clear();
+    closed.clear();
+
+    if (failure != null) {
+      throw failure;
+    }
+  }
+}
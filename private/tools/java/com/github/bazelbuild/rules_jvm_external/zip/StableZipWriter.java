@@ -0,0 +1,475 @@
+// Copyright 2024 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.github.bazelbuild.rules_jvm_external.zip;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.zip.ZipEntry.DEFLATED;
+import static java.util.zip.ZipEntry.STORED;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipException;
+
+/**
+ * Writes a zip file whose entries carry the timestamps of a {@link StableZipEntry}, so that the
+ * same inputs always produce the same bytes. The exception is entries copied with {@link
+ * #copyEntryVerbatim}, which keep whatever timestamp they already had.
+ *
+ * <p>Unlike a {@link java.util.zip.ZipOutputStream}, entries that are already deflated in a {@link
+ * RawZipFile} can be copied across as they are, without being inflated and compressed again.
+ *
+ * <p>Entries are compressed in parallel, but are always written in the order they were added, and
+ * each is compressed independently of the others. The output is identical no matter how many
+ * threads do the work.
+ */
+public class StableZipWriter implements Closeable {
+
+  private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+  private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+  private static final int END_SIGNATURE = 0x06054b50;
+  private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+  private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+  private static final int ZIP64_EXTRA_ID = 0x0001;
+  private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+  private static final int ZIP64_MAGIC_COUNT = 0xFFFF;
+  // Names are always written as UTF-8
+  private static final int FLAG_UTF8 = 0x800;
+  // How much data may be waiting to be written before we wait for the oldest entry to be compressed
+  private static final long MAX_PENDING_BYTES = 64 * 1024 * 1024;
+  private static final int MAX_PENDING_ENTRIES = 4096;
+
+  private final OutputStream out;
+  private final Executor executor;
+  private final List<Record> records = new ArrayList<>();
+  private final Set<String> names = new HashSet<>();
+  private final Deque<PendingEntry> pending = new ArrayDeque<>();
+  private final Queue<Deflater> deflaters = new ConcurrentLinkedQueue<>();
+  private int level = Deflater.DEFAULT_COMPRESSION;
+  private long pendingBytes;
+  private long written;
+  private boolean closed;
+
+  public StableZipWriter(OutputStream out) {
+    // With a single processor, handing entries to another thread is all cost and no benefit.
+    this(
+        out,
+        Runtime.getRuntime().availableProcessors() > 1 ? ForkJoinPool.commonPool() : Runnable::run);
+  }
+
+  /** Create a writer that compresses entries using {@code executor}. */
+  public StableZipWriter(OutputStream out, Executor executor) {
+    this.out = new BufferedOutputStream(out, 64 * 1024);
+    this.executor = executor;
+  }
+
+  /** Set the compression level used for entries that this writer deflates itself. */
+  public void setLevel(int level) {
+    this.level = level;
+  }
+
+  public void putDirectory(String name) throws IOException {
+    if (!name.endsWith("/")) {
+      throw new IllegalArgumentException("Directory names must end with a slash: " + name);
+    }
+    enqueue(name, 0, CompletableFuture.completedFuture(new EntryData(STORED, 0, 0, new byte[0])));
+  }
+
+  /** Write an entry called {@code name} with the given {@code contents}, deflating them. */
+  public void putEntry(String name, byte[] contents) throws IOException {
+    int entryLevel = level;
+    enqueue(
+        name,
+        contents.length,
+        CompletableFuture.supplyAsync(() -> deflate(contents, entryLevel), executor));
+  }
+
+  /** Write an entry called {@code name} with the given {@code contents}, deflating them. */
+  public void putEntry(String name, InputStream contents) throws IOException {
+    putEntry(name, contents.readAllBytes());
+  }
+
+  /**
+   * Copy {@code entry} from {@code source} into this zip as {@code name}. Deflated entries are
+   * copied exactly as they are compressed in the source, keeping their CRC and sizes. Anything
+   * else is deflated as it is copied.
+   */
+  public void copyEntry(String name, RawZipFile source, RawZipEntry entry) throws IOException {
+    if (entry.getMethod() != DEFLATED) {
+      try (InputStream is = source.getInputStream(entry)) {
+        putEntry(name, is);
+      }
+      return;
+    }
+
+    byte[] compressed = readCompressed(source, entry);
+    enqueue(
+        name,
+        compressed.length,
+        CompletableFuture.completedFuture(
+            new EntryData(DEFLATED, entry.getCrc(), entry.getSize(), compressed)));
+  }
+
+  /**
+   * Copy {@code entry} from {@code source} into this zip exactly as it is stored there, keeping
+   * its compression method, timestamp and extra fields. This is the one way to write an entry that
+   * doesn't carry the timestamp of a {@link StableZipEntry}, so it's only suitable for copying
+   * entries from a zip that is itself stable.
+   */
+  public void copyEntryVerbatim(RawZipFile source, RawZipEntry entry) throws IOException {
+    byte[] compressed = readCompressed(source, entry);
+    enqueue(
+        entry.getName(),
+        compressed.length,
+        CompletableFuture.completedFuture(
+            new EntryData(
+                entry.getMethod(),
+                entry.getCrc(),
+                entry.getSize(),
+                compressed,
+                entry.getDosTime(),
+                entry.getExtra())));
+  }
+
+  private static byte[] readCompressed(RawZipFile source, RawZipEntry entry) throws IOException {
+    byte[] compressed;
+    try (InputStream is = source.getCompressedInputStream(entry)) {
+      compressed = is.readAllBytes();
+    }
+    if (compressed.length != entry.getCompressedSize()) {
+      throw new ZipException(
+          String.format(
+              "Expected %d bytes of data for %s but found %d",
+              entry.getCompressedSize(), entry.getName(), compressed.length));
+    }
+    return compressed;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+
+    try {
+      while (!pending.isEmpty()) {
+        writeOldest();
+      }
+      writeCentralDirectory();
+      out.flush();
+    } finally {
+      // Anything still being compressed will finish on its own, but won't be written.
+      pending.clear();
+      for (Deflater deflater = deflaters.poll(); deflater != null; deflater = deflaters.poll()) {
+        deflater.end();
+      }
+      out.close();
+    }
+  }
+
+  private void enqueue(String name, long size, CompletableFuture<EntryData> data)
+      throws IOException {
+    if (closed) {
+      throw new IOException("Zip has already been closed");
+    }
+    if (!names.add(name)) {
+      throw new ZipException("duplicate entry: " + name);
+    }
+
+    pending.add(new PendingEntry(name, size, data));
+    pendingBytes += size;
+
+    // Write whatever is ready, waiting if too much is waiting to be written.
+    while (!pending.isEmpty()
+        && (pending.peek().data.isDone()
+            || pendingBytes > MAX_PENDING_BYTES
+            || pending.size() > MAX_PENDING_ENTRIES)) {
+      writeOldest();
+    }
+  }
+
+  private void writeOldest() throws IOException {
+    PendingEntry entry = pending.remove();
+    pendingBytes -= entry.size;
+
+    EntryData data;
+    try {
+      data = entry.data.join();
+    } catch (CompletionException e) {
+      throw new IOException("Unable to compress " + entry.name, e.getCause());
+    }
+    writeEntry(entry.name, data);
+  }
+
+  private EntryData deflate(byte[] contents, int level) {
+    Deflater deflater = deflaters.poll();
+    if (deflater == null) {
+      deflater = new Deflater(level, true);
+    } else {
+      deflater.reset();
+      deflater.setLevel(level);
+    }
+
+    try {
+      CRC32 crc = new CRC32();
+      crc.update(contents);
+
+      ByteArrayOutputStream compressed = new ByteArrayOutputStream(contents.length / 2 + 64);
+      byte[] output = new byte[8192];
+      deflater.setInput(contents);
+      deflater.finish();
+      while (!deflater.finished()) {
+        compressed.write(output, 0, deflater.deflate(output));
+      }
+
+      return new EntryData(DEFLATED, crc.getValue(), contents.length, compressed.toByteArray());
+    } finally {
+      deflaters.add(deflater);
+    }
+  }
+
+  private void writeEntry(String name, EntryData data) throws IOException {
+    long compressedSize = data.compressed.length;
+    Record record =
+        new Record(
+            name.getBytes(UTF_8),
+            data.method,
+            data.dosTime == -1 ? dosTime(name) : data.dosTime,
+            data.crc,
+            compressedSize,
+            data.size,
+            written,
+            data.extra);
+    records.add(record);
+
+    boolean zip64 = compressedSize >= ZIP64_MAGIC || data.size >= ZIP64_MAGIC;
+    ByteBuffer header =
+        ByteBuffer.allocate(30 + record.name.length + record.extra.length + (zip64 ? 20 : 0))
+            .order(ByteOrder.LITTLE_ENDIAN);
+    header.putInt(LOCAL_HEADER_SIGNATURE);
+    header.putShort((short) record.versionNeeded(zip64));
+    header.putShort((short) FLAG_UTF8);
+    header.putShort((short) data.method);
+    header.putInt((int) record.dosTime);
+    header.putInt((int) data.crc);
+    header.putInt((int) (zip64 ? ZIP64_MAGIC : compressedSize));
+    header.putInt((int) (zip64 ? ZIP64_MAGIC : data.size));
+    header.putShort((short) record.name.length);
+    header.putShort((short) (record.extra.length + (zip64 ? 20 : 0)));
+    header.put(record.name);
+    if (zip64) {
+      header.putShort((short) ZIP64_EXTRA_ID);
+      header.putShort((short) 16);
+      header.putLong(data.size);
+      header.putLong(compressedSize);
+    }
+    header.put(record.extra);
+    write(header);
+
+    out.write(data.compressed);
+    written += compressedSize;
+  }
+
+  private void writeCentralDirectory() throws IOException {
+    long start = written;
+    for (Record record : records) {
+      List<Long> zip64Fields = new ArrayList<>();
+      if (record.size >= ZIP64_MAGIC) {
+        zip64Fields.add(record.size);
+      }
+      if (record.compressedSize >= ZIP64_MAGIC) {
+        zip64Fields.add(record.compressedSize);
+      }
+      if (record.offset >= ZIP64_MAGIC) {
+        zip64Fields.add(record.offset);
+      }
+      boolean zip64 = !zip64Fields.isEmpty();
+      int extraLength = record.extra.length + (zip64 ? 4 + 8 * zip64Fields.size() : 0);
+
+      ByteBuffer header =
+          ByteBuffer.allocate(46 + record.name.length + extraLength)
+              .order(ByteOrder.LITTLE_ENDIAN);
+      header.putInt(CENTRAL_HEADER_SIGNATURE);
+      header.putShort((short) record.versionNeeded(zip64));
+      header.putShort((short) record.versionNeeded(zip64));
+      header.putShort((short) FLAG_UTF8);
+      header.putShort((short) record.method);
+      header.putInt((int) record.dosTime);
+      header.putInt((int) record.crc);
+      header.putInt((int) Math.min(record.compressedSize, ZIP64_MAGIC));
+      header.putInt((int) Math.min(record.size, ZIP64_MAGIC));
+      header.putShort((short) record.name.length);
+      header.putShort((short) extraLength);
+      header.putShort((short) 0); // comment length
+      header.putShort((short) 0); // disk number
+      header.putShort((short) 0); // internal attributes
+      header.putInt(0); // external attributes
+      header.putInt((int) Math.min(record.offset, ZIP64_MAGIC));
+      header.put(record.name);
+      if (zip64) {
+        header.putShort((short) ZIP64_EXTRA_ID);
+        header.putShort((short) (8 * zip64Fields.size()));
+        zip64Fields.forEach(header::putLong);
+      }
+      header.put(record.extra);
+      write(header);
+    }
+    long size = written - start;
+
+    if (records.size() >= ZIP64_MAGIC_COUNT || start >= ZIP64_MAGIC || size >= ZIP64_MAGIC) {
+      long zip64End = written;
+      ByteBuffer end = ByteBuffer.allocate(56 + 20).order(ByteOrder.LITTLE_ENDIAN);
+      end.putInt(ZIP64_END_SIGNATURE);
+      end.putLong(44); // size of the rest of this record
+      end.putShort((short) 45); // version made by
+      end.putShort((short) 45); // version needed
+      end.putInt(0); // this disk
+      end.putInt(0); // disk with the central directory
+      end.putLong(records.size());
+      end.putLong(records.size());
+      end.putLong(size);
+      end.putLong(start);
+
+      end.putInt(ZIP64_LOCATOR_SIGNATURE);
+      end.putInt(0); // disk with the zip64 end of central directory
+      end.putLong(zip64End);
+      end.putInt(1); // total number of disks
+      write(end);
+    }
+
+    ByteBuffer end = ByteBuffer.allocate(22).order(ByteOrder.LITTLE_ENDIAN);
+    end.putInt(END_SIGNATURE);
+    end.putShort((short) 0); // this disk
+    end.putShort((short) 0); // disk with the central directory
+    end.putShort((short) Math.min(records.size(), ZIP64_MAGIC_COUNT));
+    end.putShort((short) Math.min(records.size(), ZIP64_MAGIC_COUNT));
+    end.putInt((int) Math.min(size, ZIP64_MAGIC));
+    end.putInt((int) Math.min(start, ZIP64_MAGIC));
+    end.putShort((short) 0); // comment length
+    write(end);
+  }
+
+  private void write(ByteBuffer buffer) throws IOException {
+    out.write(buffer.array(), 0, buffer.position());
+    written += buffer.position();
+  }
+
+  private static long dosTime(String name) {
+    LocalDateTime time =
+        LocalDateTime.ofInstant(
+            Instant.ofEpochMilli(new StableZipEntry(name).getTime()), ZoneId.systemDefault());
+    return (time.getYear() - 1980) << 25
+        | time.getMonthValue() << 21
+        | time.getDayOfMonth() << 16
+        | time.getHour() << 11
+        | time.getMinute() << 5
+        | time.getSecond() >> 1;
+  }
+
+  private static class PendingEntry {
+    private final String name;
+    private final long size;
+    private final CompletableFuture<EntryData> data;
+
+    PendingEntry(String name, long size, CompletableFuture<EntryData> data) {
+      this.name = name;
+      this.size = size;
+      this.data = data;
+    }
+  }
+
+  private static class EntryData {
+    private final int method;
+    private final long crc;
+    private final long size;
+    private final byte[] compressed;
+    // -1 if the entry should have the timestamp of a `StableZipEntry`
+    private final long dosTime;
+    private final byte[] extra;
+
+    EntryData(int method, long crc, long size, byte[] compressed) {
+      this(method, crc, size, compressed, -1, new byte[0]);
+    }
+
+    EntryData(int method, long crc, long size, byte[] compressed, long dosTime, byte[] extra) {
+      this.method = method;
+      this.crc = crc;
+      this.size = size;
+      this.compressed = compressed;
+      this.dosTime = dosTime;
+      this.extra = extra;
+    }
+  }
+
+  private static class Record {
+    private final byte[] name;
+    private final int method;
+    private final long dosTime;
+    private final long crc;
+    private final long compressedSize;
+    private final long size;
+    private final long offset;
+    private final byte[] extra;
+
+    Record(
+        byte[] name,
+        int method,
+        long dosTime,
+        long crc,
+        long compressedSize,
+        long size,
+        long offset,
+        byte[] extra) {
+      this.name = name;
+      this.method = method;
+      this.dosTime = dosTime;
+      this.crc = crc;
+      this.compressedSize = compressedSize;
+      this.size = size;
+      this.offset = offset;
+      this.extra = extra;
+    }
+
+    int versionNeeded(boolean zip64) {
+      if (zip64) {
+        return 45;
+      }
+      return method == STORED ? 10 : 20;
+    }
+  }
+}
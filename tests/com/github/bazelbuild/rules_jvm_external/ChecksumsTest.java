@@ -0,0 +1,96 @@
+// Copyright 2024 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.github.bazelbuild.rules_jvm_external;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ChecksumsTest {
+
+  @Rule public TemporaryFolder tmpDir = new TemporaryFolder();
+
+  @Test
+  public void shouldCalculateEveryRequestedDigest() throws IOException {
+    Path file = tmpDir.newFile("hello.txt").toPath();
+    Files.writeString(file, "Hello World!", UTF_8);
+
+    Map<String, String> checksums =
+        Checksums.calculate(
+            file, Checksums.MD5, Checksums.SHA_1, Checksums.SHA_256, Checksums.SHA_512);
+
+    assertEquals(
+        List.of(Checksums.MD5, Checksums.SHA_1, Checksums.SHA_256, Checksums.SHA_512),
+        List.copyOf(checksums.keySet()));
+    assertEquals("ed076287532e86365e841e92bfc50d8c", checksums.get(Checksums.MD5));
+    assertEquals("2ef7bde608ce5404e97d5f042f95f89f1c232871", checksums.get(Checksums.SHA_1));
+    assertEquals(
+        "7f83b1657ff1fc53b92dc18148a1d65dfc2d4b1fa3d677284addd200126d9069",
+        checksums.get(Checksums.SHA_256));
+    assertEquals(
+        "861844d6704e8573fec34d967e20bcfef3d424cf48be04e6dc08f2bd58c72974"
+            + "3371015ead891cc3cf1c9d34b49264b510751b1ff9e537937bc46b5d6ff4ecc8",
+        checksums.get(Checksums.SHA_512));
+  }
+
+  @Test
+  public void shouldHashFilesLargerThanTheReadBuffer() throws Exception {
+    byte[] contents = new byte[1024 * 1024 + 17];
+    new Random(42).nextBytes(contents);
+    Path file = tmpDir.newFile("large.bin").toPath();
+    Files.write(file, contents);
+
+    Map<String, String> checksums = Checksums.calculate(file, Checksums.SHA_1, Checksums.SHA_256);
+
+    assertEquals(
+        Checksums.toHex(MessageDigest.getInstance("SHA-1").digest(contents)),
+        checksums.get(Checksums.SHA_1));
+    assertEquals(
+        Checksums.toHex(MessageDigest.getInstance("SHA-256").digest(contents)),
+        checksums.get(Checksums.SHA_256));
+  }
+
+  @Test
+  public void shouldHashEmptyFiles() throws IOException {
+    Path file = tmpDir.newFile("empty.txt").toPath();
+
+    assertEquals(
+        "e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855",
+        Checksums.sha256(file));
+  }
+
+  @Test
+  public void shouldRejectUnknownAlgorithms() throws IOException {
+    Path file = tmpDir.newFile("hello.txt").toPath();
+
+    try {
+      Checksums.calculate(file, "ROT-13");
+      fail();
+    } catch (IllegalArgumentException expected) {
+      // This is good
+    }
+  }
+}
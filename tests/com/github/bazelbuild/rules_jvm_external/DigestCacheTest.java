@@ -0,0 +1,92 @@
+// Copyright 2024 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.github.bazelbuild.rules_jvm_external;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DigestCacheTest {
+
+  private static final String HELLO_WORLD_SHA256 =
+      "7f83b1657ff1fc53b92dc18148a1d65dfc2d4b1fa3d677284addd200126d9069";
+
+  @Rule public TemporaryFolder tmpDir = new TemporaryFolder();
+
+  @Test
+  public void digestsOfUnchangedFilesAreReused() throws IOException {
+    Path file = writeOldFile("hello.txt", "Hello World!");
+    Path cacheFile = tmpDir.getRoot().toPath().resolve("digests");
+
+    DigestCache cache = DigestCache.open(cacheFile);
+    assertEquals(HELLO_WORLD_SHA256, cache.sha256(file));
+    cache.save();
+
+    // Prove that the digest comes from the cache, rather than from hashing the file again
+    String contents = Files.readString(cacheFile, UTF_8);
+    Files.writeString(cacheFile, contents.replace(HELLO_WORLD_SHA256, "cafebabe"), UTF_8);
+
+    assertEquals("cafebabe", DigestCache.open(cacheFile).sha256(file));
+  }
+
+  @Test
+  public void changedFilesAreHashedAgain() throws IOException {
+    Path file = writeOldFile("hello.txt", "Hello World!");
+    Path cacheFile = tmpDir.getRoot().toPath().resolve("digests");
+
+    DigestCache cache = DigestCache.open(cacheFile);
+    cache.sha256(file);
+    cache.save();
+
+    // Same size and modification time, but different contents
+    FileTime modified = Files.getLastModifiedTime(file);
+    Files.writeString(file, "Hello Earth!", UTF_8);
+    Files.setLastModifiedTime(file, modified);
+
+    assertEquals(
+        "5eee5a4e13e991d1037e8a9856b204d11ec128852f14ced2a6cc71eae5beb7c8",
+        DigestCache.open(cacheFile).sha256(file));
+  }
+
+  @Test
+  public void recentlyModifiedFilesAreNotCached() throws IOException {
+    Path file = tmpDir.newFile("hello.txt").toPath();
+    Files.writeString(file, "Hello World!", UTF_8);
+    Path cacheFile = tmpDir.getRoot().toPath().resolve("digests");
+
+    DigestCache cache = DigestCache.open(cacheFile);
+    assertEquals(HELLO_WORLD_SHA256, cache.sha256(file));
+    cache.save();
+
+    assertFalse(Files.exists(cacheFile));
+  }
+
+  private Path writeOldFile(String name, String contents) throws IOException {
+    Path file = tmpDir.newFile(name).toPath();
+    Files.writeString(file, contents, UTF_8);
+    Files.setLastModifiedTime(file, FileTime.from(Instant.now().minus(1, ChronoUnit.HOURS)));
+    return file;
+  }
+}
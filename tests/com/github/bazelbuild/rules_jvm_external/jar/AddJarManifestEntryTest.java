@@ -31,7 +31,11 @@ import java.util.jar.JarFile;
 import java.util.jar.JarInputStream;
 import java.util.jar.JarOutputStream;
 import java.util.jar.Manifest;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 import org.junit.Rule;
@@ -154,6 +158,38 @@ public class AddJarManifestEntryTest {
             .contains("Target-Label: @maven//:com_google_guava_guava"));
   }
 
+  @Test
+  public void shouldReplaceAManifestWhoseNameIsNotUpperCase() throws IOException {
+    Path inJar = temp.newFile("lower.jar").toPath();
+    try (OutputStream os = Files.newOutputStream(inJar);
+        ZipOutputStream zos = new ZipOutputStream(os)) {
+      zos.putNextEntry(new ZipEntry("META-INF/manifest.mf"));
+      zos.write("Manifest-Version: 1.0\r\nHello-World: hello\r\n\r\n".getBytes(UTF_8));
+      zos.closeEntry();
+      zos.putNextEntry(new ZipEntry("com/example/A.class"));
+      zos.write("Hello, World!".getBytes(UTF_8));
+      zos.closeEntry();
+    }
+    Path outJar = temp.newFile("out.jar").toPath();
+
+    AddJarManifestEntry.main(
+        new String[] {
+          "--source", inJar.toAbsolutePath().toString(),
+          "--output", outJar.toAbsolutePath().toString(),
+          "--manifest-entry", "Target-Label:@maven//:com_example_a"
+        });
+
+    List<String> manifests =
+        readJarEntries(outJar).stream()
+            .filter(JarFile.MANIFEST_NAME::equalsIgnoreCase)
+            .collect(Collectors.toList());
+    assertEquals(List.of(JarFile.MANIFEST_NAME), manifests);
+
+    Attributes attributes = readManifest(outJar).getMainAttributes();
+    assertEquals("hello", attributes.getValue("Hello-World"));
+    assertEquals("@maven//:com_example_a", attributes.getValue("Target-Label"));
+  }
+
   @Test
   public void doesNotAlterSignedJars() throws IOException {
     Path input = temp.newFile("in.jar").toPath();
@@ -402,6 +438,54 @@ public class AddJarManifestEntryTest {
     assertFalse(manifest.getMainAttributes().containsKey(AUTOMATIC_MODULE_NAME));
   }
 
+  @Test
+  public void shouldCopyEntriesWithoutRecompressingThem() throws IOException {
+    Path inJar = temp.newFile("in.jar").toPath();
+    try (OutputStream os = Files.newOutputStream(inJar);
+        ZipOutputStream zos = new JarOutputStream(os)) {
+      zos.setLevel(Deflater.BEST_SPEED);
+      ZipEntry deflated = new ZipEntry("com/example/A.class");
+      deflated.setTime(1234567890000L);
+      zos.putNextEntry(deflated);
+      zos.write("Hello, World! Hello, World! Hello, World!".getBytes(UTF_8));
+      zos.closeEntry();
+
+      byte[] contents = "Not compressed".getBytes(UTF_8);
+      CRC32 crc = new CRC32();
+      crc.update(contents);
+      ZipEntry stored = new ZipEntry("com/example/stored.txt");
+      stored.setMethod(ZipEntry.STORED);
+      stored.setSize(contents.length);
+      stored.setCrc(crc.getValue());
+      zos.putNextEntry(stored);
+      zos.write(contents);
+      zos.closeEntry();
+    }
+    Path outJar = temp.newFile("out.jar").toPath();
+
+    AddJarManifestEntry.main(
+        new String[] {
+          "--source", inJar.toAbsolutePath().toString(),
+          "--output", outJar.toAbsolutePath().toString(),
+          "--manifest-entry", "Target-Label:@maven//:com_example_a"
+        });
+
+    try (ZipFile in = new ZipFile(inJar.toFile());
+        ZipFile out = new ZipFile(outJar.toFile())) {
+      for (String name : List.of("com/example/A.class", "com/example/stored.txt")) {
+        ZipEntry original = in.getEntry(name);
+        ZipEntry copied = out.getEntry(name);
+        assertEquals(original.getMethod(), copied.getMethod());
+        assertEquals(original.getCompressedSize(), copied.getCompressedSize());
+        assertEquals(original.getCrc(), copied.getCrc());
+        assertEquals(original.getTime(), copied.getTime());
+      }
+    }
+    assertEquals(
+        "@maven//:com_example_a",
+        readManifest(outJar).getMainAttributes().getValue("Target-Label"));
+  }
+
   private Manifest readManifest(Path fromJar) throws IOException {
     try (InputStream is = Files.newInputStream(fromJar);
         JarInputStream jis = new JarInputStream(is)) {
@@ -0,0 +1,79 @@
+// Copyright 2024 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.github.bazelbuild.rules_jvm_external.jar;
+
+import static com.github.bazelbuild.rules_jvm_external.jar.DuplicateEntryStrategy.FIRST_IN_WINS;
+import static com.github.bazelbuild.rules_jvm_external.jar.DuplicateEntryStrategy.IS_ERROR;
+import static com.github.bazelbuild.rules_jvm_external.jar.DuplicateEntryStrategy.LAST_IN_WINS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class DuplicateEntryStrategyTest {
+
+  private final AtomicInteger digestsComputed = new AtomicInteger();
+
+  @Test
+  public void firstAndLastWinsNeverReadTheContents() throws IOException {
+    EntryFingerprint original = fingerprint(10, 1234, "a");
+    EntryFingerprint replacement = fingerprint(10, 1234, "b");
+
+    assertTrue(LAST_IN_WINS.isReplacingCurrent("A.class", original, replacement));
+    assertFalse(FIRST_IN_WINS.isReplacingCurrent("A.class", original, replacement));
+    assertTrue(FIRST_IN_WINS.isReplacingCurrent("A.class", null, replacement));
+    assertEquals(0, digestsComputed.get());
+  }
+
+  @Test
+  public void entriesWithDifferentSizesOrCrcsAreDifferentWithoutReadingThem() throws IOException {
+    assertDifferent(fingerprint(10, 1234, "a"), fingerprint(11, 1234, "a"));
+    assertDifferent(fingerprint(10, 1234, "a"), fingerprint(10, 4321, "a"));
+    assertEquals(0, digestsComputed.get());
+  }
+
+  @Test
+  public void entriesWithTheSameSizeAndCrcAreComparedByDigest() throws IOException {
+    assertFalse(
+        IS_ERROR.isReplacingCurrent(
+            "A.class", fingerprint(10, 1234, "a"), fingerprint(10, 1234, "a")));
+    assertEquals(2, digestsComputed.get());
+
+    assertDifferent(fingerprint(10, 1234, "a"), fingerprint(10, 1234, "b"));
+  }
+
+  private void assertDifferent(EntryFingerprint original, EntryFingerprint replacement) {
+    try {
+      IS_ERROR.isReplacingCurrent("A.class", original, replacement);
+      fail("Expected duplicates to be reported as an error");
+    } catch (IOException expected) {
+      // This is good
+    }
+  }
+
+  private EntryFingerprint fingerprint(long size, long crc, String digest) {
+    return new EntryFingerprint(
+        size,
+        crc,
+        () -> {
+          digestsComputed.incrementAndGet();
+          return digest.getBytes();
+        });
+  }
+}
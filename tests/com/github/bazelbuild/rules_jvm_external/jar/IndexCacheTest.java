@@ -0,0 +1,106 @@
+// Copyright 2024 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.github.bazelbuild.rules_jvm_external.jar;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class IndexCacheTest {
+
+  @Rule public TemporaryFolder temp = new TemporaryFolder();
+
+  private final AtomicInteger indexCount = new AtomicInteger();
+  private final IndexJar countingIndexJar =
+      new IndexJar() {
+        @Override
+        public PerJarIndexResults index(Path path) throws IOException {
+          indexCount.incrementAndGet();
+          return super.index(path);
+        }
+      };
+  private Path jar;
+
+  @Before
+  public void createJar() throws IOException {
+    jar = temp.newFile("example.jar").toPath();
+    try (OutputStream os = Files.newOutputStream(jar);
+        ZipOutputStream zos = new ZipOutputStream(os)) {
+      zos.putNextEntry(new ZipEntry("com/example/Foo.class"));
+      zos.closeEntry();
+      zos.putNextEntry(new ZipEntry("META-INF/services/com.example.Service"));
+      zos.write("com.example.Foo\n".getBytes(UTF_8));
+      zos.closeEntry();
+    }
+  }
+
+  @Test
+  public void shouldOnlyIndexTheSameContentsOnce() throws IOException {
+    Path root = temp.newFolder("cache").toPath();
+
+    PerJarIndexResults first = new IndexCache(root, countingIndexJar).index(jar, "ab1234");
+    // A fresh cache instance, as a later run of the resolver would create
+    PerJarIndexResults second = new IndexCache(root, countingIndexJar).index(jar, "ab1234");
+
+    assertEquals(1, indexCount.get());
+    assertEquals(new TreeSet<>(Set.of("com.example")), second.getPackages());
+    assertEquals(first.getPackages(), second.getPackages());
+    assertEquals(
+        new TreeSet<>(Set.of("com.example.Foo")),
+        second.getServiceImplementations().get("com.example.Service"));
+  }
+
+  @Test
+  public void shouldIndexDifferentContentsSeparately() throws IOException {
+    IndexCache cache = new IndexCache(temp.newFolder("cache").toPath(), countingIndexJar);
+
+    cache.index(jar, "ab1234");
+    cache.index(jar, "cd5678");
+
+    assertEquals(2, indexCount.get());
+  }
+
+  @Test
+  public void shouldReindexWhenTheCachedResultsAreDamaged() throws IOException {
+    Path root = temp.newFolder("cache").toPath();
+    IndexCache cache = new IndexCache(root, countingIndexJar);
+    cache.index(jar, "ab1234");
+
+    try (Stream<Path> entries = Files.walk(root)) {
+      for (Path entry : (Iterable<Path>) entries.filter(Files::isRegularFile)::iterator) {
+        Files.writeString(entry, "{ this is not json");
+      }
+    }
+
+    PerJarIndexResults results = cache.index(jar, "ab1234");
+
+    assertEquals(2, indexCount.get());
+    assertEquals(new TreeSet<>(Set.of("com.example")), results.getPackages());
+  }
+}
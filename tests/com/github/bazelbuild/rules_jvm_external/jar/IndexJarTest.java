@@ -21,6 +21,7 @@ import com.google.gson.Gson;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
@@ -29,6 +30,8 @@ import java.nio.file.Paths;
 import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 import org.junit.Test;
 
 public class IndexJarTest {
@@ -121,6 +124,26 @@ public class IndexJarTest {
     }
   }
 
+  @Test
+  public void extractPackageName() {
+    assertEquals("", IndexJar.extractPackageName("Foo.class"));
+    assertEquals("com.example", IndexJar.extractPackageName("com/example/Foo.class"));
+    assertEquals(
+        "com.example", IndexJar.extractPackageName("META-INF/versions/11/com/example/Foo.class"));
+    assertEquals("", IndexJar.extractPackageName("META-INF/versions/11/Foo.class"));
+    assertEquals(
+        "META-INF.versions.latest",
+        IndexJar.extractPackageName("META-INF/versions/latest/Foo.class"));
+  }
+
+  @Test
+  public void parseServiceImplementations_onlyComments() throws Exception {
+    try (InputStream inputStream = streamOf("#com.example.Impl1\n\t# com.example.Impl2\n")) {
+      SortedSet<String> impls = new IndexJar().parseServiceImplementations(inputStream);
+      assertEquals(sortedSet(), impls);
+    }
+  }
+
   private InputStream streamOf(String string) {
     return new ByteArrayInputStream(string.getBytes(StandardCharsets.UTF_8));
   }
@@ -133,6 +156,37 @@ public class IndexJarTest {
         new TreeMap<>());
   }
 
+  @Test
+  public void indexingCanAlsoHashTheJar() throws Exception {
+    Path jar =
+        Paths.get(Runfiles.create().rlocation("hamcrest_core_for_test/file/hamcrest-core-1.3.jar"));
+
+    PerJarIndexResults perJarIndexResults = new IndexJar().indexAndHash(jar);
+
+    assertEquals(
+        "66fdef91e9739348df7a096aa384a5685f4e875584cce89386a7a47251c4d8e9",
+        perJarIndexResults.getSha256());
+    assertEquals(
+        sortedSet("org.hamcrest", "org.hamcrest.core", "org.hamcrest.internal"),
+        perJarIndexResults.getPackages());
+  }
+
+  @Test
+  public void jarWithPreamble() throws Exception {
+    // Executable jars often have a launcher script prepended to them
+    Path jar = Files.createTempFile("executable", ".jar");
+    try (OutputStream os = Files.newOutputStream(jar)) {
+      os.write("#!/bin/sh\nexec java -jar \"$0\" \"$@\"\n".getBytes(StandardCharsets.UTF_8));
+      try (ZipOutputStream zos = new ZipOutputStream(os)) {
+        zos.putNextEntry(new ZipEntry("com/example/Main.class"));
+        zos.closeEntry();
+      }
+    }
+
+    PerJarIndexResults perJarIndexResults = new IndexJar().index(jar);
+    assertEquals(sortedSet("com.example"), perJarIndexResults.getPackages());
+  }
+
   private static class Lockfile {
     public TreeMap<String, TreeMap<String, TreeSet<String>>> services;
   }
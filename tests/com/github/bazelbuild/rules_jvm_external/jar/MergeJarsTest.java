@@ -17,10 +17,13 @@ package com.github.bazelbuild.rules_jvm_external.jar;
 import static com.github.bazelbuild.rules_jvm_external.ZipUtils.createJar;
 import static com.github.bazelbuild.rules_jvm_external.ZipUtils.readJar;
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
+import com.github.bazelbuild.rules_jvm_external.zip.StableZipEntry;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import java.io.ByteArrayOutputStream;
@@ -29,6 +32,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -36,7 +40,9 @@ import java.util.Set;
 import java.util.jar.Attributes;
 import java.util.jar.JarFile;
 import java.util.jar.Manifest;
+import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 import org.junit.Rule;
@@ -555,6 +561,90 @@ public class MergeJarsTest {
     }
   }
 
+  @Test
+  public void manifestEntriesCanBeAddedAndRemovedWhileMerging() throws IOException {
+    Path inputOne = temp.newFile("one.jar").toPath();
+
+    Manifest manifest = new Manifest();
+    manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+    manifest.getMainAttributes().put(new Attributes.Name("Unwanted"), "foo");
+    manifest.getMainAttributes().put(new Attributes.Name("Automatic-Module-Name"), "com.int.foo");
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    manifest.write(bos);
+
+    createJar(
+        inputOne,
+        ImmutableMap.of(
+            "META-INF/MANIFEST.MF", bos.toString("UTF-8"), "com/example/A.class", "Hello"));
+
+    Path outputJar = temp.newFile("out.jar").toPath();
+
+    MergeJars.main(
+        new String[] {
+          "--output", outputJar.toAbsolutePath().toString(),
+          "--sources", inputOne.toAbsolutePath().toString(),
+          "--manifest-entry", "Implementation-Version:1.2.3",
+          "--remove-entry", "Unwanted",
+          "--make-safe"
+        });
+
+    try (JarFile jar = new JarFile(outputJar.toFile())) {
+      Attributes attributes = jar.getManifest().getMainAttributes();
+      assertEquals("1.2.3", attributes.getValue("Implementation-Version"));
+      assertFalse(attributes.containsKey(new Attributes.Name("Unwanted")));
+      // "int" is a reserved word, so this would be rejected by the module system
+      assertFalse(attributes.containsKey(new Attributes.Name("Automatic-Module-Name")));
+    }
+    assertEquals("Hello", readJar(outputJar).get("com/example/A.class"));
+  }
+
+  @Test
+  public void manifestEntriesAreAddedEvenIfThereAreNoSources() throws IOException {
+    Path outputJar = temp.newFile("out.jar").toPath();
+
+    MergeJars.main(
+        new String[] {
+          "--output", outputJar.toAbsolutePath().toString(),
+          "--manifest-entry", "Implementation-Version:1.2.3"
+        });
+
+    try (JarFile jar = new JarFile(outputJar.toFile())) {
+      assertEquals(
+          "1.2.3", jar.getManifest().getMainAttributes().getValue("Implementation-Version"));
+    }
+  }
+
+  @Test
+  public void mergingNoSourcesWithoutAmendingTheManifestGivesAJarWithNoEntries()
+      throws IOException {
+    Path outputJar = temp.newFile("out.jar").toPath();
+
+    MergeJars.main(new String[] {"--output", outputJar.toAbsolutePath().toString()});
+
+    try (JarFile jar = new JarFile(outputJar.toFile())) {
+      assertEquals(0, jar.size());
+    }
+  }
+
+  @Test
+  public void everyManifestAmendmentIsAppliedEvenIfThereAreNoSources() throws IOException {
+    for (String[] amendment :
+        List.of(
+            new String[] {"--manifest-entry", "Implementation-Version:1.2.3"},
+            new String[] {"--remove-entry", "Implementation-Version"},
+            new String[] {"--make-safe"})) {
+      Path outputJar = temp.newFile().toPath();
+
+      List<String> args = new ArrayList<>(List.of("--output", outputJar.toString()));
+      args.addAll(List.of(amendment));
+      MergeJars.main(args.toArray(new String[0]));
+
+      try (JarFile jar = new JarFile(outputJar.toFile())) {
+        assertNotNull(String.join(" ", amendment), jar.getManifest());
+      }
+    }
+  }
+
   @Test
   public void mergedJarServiceProviderFilePreservesComments() throws IOException {
     Path inputOne = temp.newFile("one.jar").toPath();
@@ -660,6 +750,83 @@ public class MergeJarsTest {
     assertEquals("log4j.rootLogger=ERROR,stdout", contents.get("log4j.properties"));
   }
 
+  @Test
+  public void shouldCopyDeflatedEntriesWithoutRecompressingThem() throws IOException {
+    Path inputOne = temp.newFile("first.jar").toPath();
+    createUncompressedJar(inputOne, "com/example/A.class", "Hello, World! ".repeat(1000));
+
+    Path outputJar = temp.newFile("out.jar").toPath();
+    MergeJars.main(
+        new String[] {
+          "--output", outputJar.toAbsolutePath().toString(),
+          "--sources", inputOne.toAbsolutePath().toString()
+        });
+
+    Path recompressedJar = temp.newFile("recompressed.jar").toPath();
+    MergeJars.main(
+        new String[] {
+          "--output", recompressedJar.toAbsolutePath().toString(),
+          "--sources", inputOne.toAbsolutePath().toString(),
+          "--compression"
+        });
+
+    ZipEntry original = readEntry(inputOne, "com/example/A.class");
+    ZipEntry copied = readEntry(outputJar, "com/example/A.class");
+    ZipEntry recompressed = readEntry(recompressedJar, "com/example/A.class");
+
+    assertEquals(original.getCompressedSize(), copied.getCompressedSize());
+    assertEquals(original.getCrc(), copied.getCrc());
+    assertTrue(recompressed.getCompressedSize() < original.getCompressedSize());
+    assertEquals(new StableZipEntry("com/example/A.class").getTime(), copied.getTime());
+
+    assertEquals("Hello, World! ".repeat(1000), readJar(outputJar).get("com/example/A.class"));
+    assertEquals(
+        "Hello, World! ".repeat(1000), readJar(recompressedJar).get("com/example/A.class"));
+  }
+
+  @Test
+  public void mergingTheSameJarsTwiceGivesIdenticalOutput() throws IOException {
+    Path inputOne = temp.newFile("first.jar").toPath();
+    createJar(
+        inputOne,
+        ImmutableMap.of(
+            "com/example/A.class", "Hello, World!",
+            "META-INF/services/com.example.Service", "com.example.A"));
+    Path inputTwo = temp.newFile("second.jar").toPath();
+    createUncompressedJar(inputTwo, "com/example/foo/B.class", "Also hello");
+
+    Path first = temp.newFile("first-out.jar").toPath();
+    Path second = temp.newFile("second-out.jar").toPath();
+    for (Path output : List.of(first, second)) {
+      MergeJars.main(
+          new String[] {
+            "--output", output.toAbsolutePath().toString(),
+            "--sources", inputOne.toAbsolutePath().toString(),
+            "--sources", inputTwo.toAbsolutePath().toString()
+          });
+    }
+
+    assertArrayEquals(Files.readAllBytes(first), Files.readAllBytes(second));
+  }
+
+  private static void createUncompressedJar(Path outputTo, String name, String contents)
+      throws IOException {
+    // Entries are still deflated, but the deflated data is larger than the contents
+    try (OutputStream os = Files.newOutputStream(outputTo);
+        ZipOutputStream zos = new ZipOutputStream(os)) {
+      zos.setLevel(Deflater.NO_COMPRESSION);
+      zos.putNextEntry(new ZipEntry(name));
+      zos.write(contents.getBytes(UTF_8));
+      zos.closeEntry();
+    }
+  }
+
+  private static ZipEntry readEntry(Path jar, String name) throws IOException {
+    try (ZipFile zipFile = new ZipFile(jar.toFile())) {
+      return zipFile.getEntry(name);
+    }
+  }
+
   private Map<String, Long> readJarTimeStamps(Path jar) throws IOException {
     ImmutableMap.Builder<String, Long> builder = ImmutableMap.builder();
 
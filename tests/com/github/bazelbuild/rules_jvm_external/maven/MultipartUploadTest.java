@@ -0,0 +1,147 @@
+// Copyright 2024 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.github.bazelbuild.rules_jvm_external.maven;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+
+public class MultipartUploadTest {
+
+  private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+  @After
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void shouldSplitIntoPartsOfTheMinimumSize() {
+    List<MultipartUpload.Part> parts = MultipartUpload.split(25, 10, 100);
+
+    assertEquals(3, parts.size());
+    assertPart(parts.get(0), 1, 0, 10);
+    assertPart(parts.get(1), 2, 10, 10);
+    assertPart(parts.get(2), 3, 20, 5);
+  }
+
+  @Test
+  public void shouldUseLargerPartsRatherThanExceedTheMaximumNumberOfParts() {
+    List<MultipartUpload.Part> parts = MultipartUpload.split(1000, 10, 32);
+
+    assertEquals(32, parts.size());
+    long total = 0;
+    for (MultipartUpload.Part part : parts) {
+      assertEquals(total, part.getOffset());
+      total += part.getLength();
+    }
+    assertEquals(1000, total);
+  }
+
+  @Test
+  public void anEmptyFileIsASinglePart() {
+    List<MultipartUpload.Part> parts = MultipartUpload.split(0, 10, 32);
+
+    assertEquals(1, parts.size());
+    assertPart(parts.get(0), 1, 0, 0);
+  }
+
+  @Test
+  public void shouldUploadPartsInParallelAndReturnResultsInOrder() throws IOException {
+    byte[] contents = new byte[1000];
+    new Random(42).nextBytes(contents);
+    List<MultipartUpload.Part> parts = MultipartUpload.split(contents.length, 100, 32);
+
+    // A stand-in for an object store, which holds each part until they're assembled
+    Map<Integer, byte[]> store = new ConcurrentHashMap<>();
+    CountDownLatch allStarted = new CountDownLatch(4);
+    List<String> names =
+        MultipartUpload.uploadParts(
+            parts,
+            part -> {
+              // Wait until several parts are in flight at once
+              allStarted.countDown();
+              allStarted.await(30, TimeUnit.SECONDS);
+
+              int from = (int) part.getOffset();
+              store.put(
+                  part.getNumber(),
+                  Arrays.copyOfRange(contents, from, from + (int) part.getLength()));
+              return "part-" + part.getNumber();
+            },
+            executor);
+
+    assertEquals(0, allStarted.getCount());
+    assertEquals(parts.size(), names.size());
+    ByteArrayOutputStream assembled = new ByteArrayOutputStream();
+    for (int i = 0; i < names.size(); i++) {
+      assertEquals("part-" + (i + 1), names.get(i));
+      assembled.write(store.get(i + 1), 0, store.get(i + 1).length);
+    }
+    assertArrayEquals(contents, assembled.toByteArray());
+  }
+
+  @Test
+  public void shouldReportPartsThatFailToUpload() {
+    IOException failure = new IOException("Connection reset");
+
+    try {
+      MultipartUpload.uploadParts(
+          MultipartUpload.split(100, 10, 32),
+          part -> {
+            if (part.getNumber() == 3) {
+              throw failure;
+            }
+            return part.getNumber();
+          },
+          executor);
+      fail();
+    } catch (IOException e) {
+      assertSame(failure, e);
+    }
+  }
+
+  @Test
+  public void shouldRejectNonsensicalPartSizes() {
+    try {
+      MultipartUpload.split(100, 0, 32);
+      fail();
+    } catch (IllegalArgumentException expected) {
+      assertTrue(expected.getMessage().contains("32"));
+    }
+  }
+
+  private static void assertPart(MultipartUpload.Part part, int number, long offset, long length) {
+    assertEquals(number, part.getNumber());
+    assertEquals(offset, part.getOffset());
+    assertEquals(length, part.getLength());
+  }
+}
@@ -0,0 +1,96 @@
+// Copyright 2024 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.github.bazelbuild.rules_jvm_external.maven;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.github.bazelbuild.rules_jvm_external.Checksums;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import org.junit.Test;
+
+public class RemoteChecksumsTest {
+
+  private static final String TARGET = "https://example.com/repo/com/example/a/1.0/a-1.0.jar";
+  private static final Map<String, String> CHECKSUMS =
+      Map.of(
+          Checksums.SHA_1, "da39a3ee5e6b4b0d3255bfef95601890afd80709",
+          Checksums.SHA_256, "e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855");
+
+  private final Map<String, String> remote = new HashMap<>();
+  private final List<String> fetched = new ArrayList<>();
+
+  @Test
+  public void shouldBeUnchangedIfTheRemoteSha256Matches() throws Exception {
+    remote.put(TARGET + ".sha256", CHECKSUMS.get(Checksums.SHA_256));
+    remote.put(TARGET + ".sha1", "0000000000000000000000000000000000000000");
+
+    assertTrue(isUnchanged());
+    // The sha256 is stronger, so the sha1 isn't consulted at all
+    assertEquals(List.of(TARGET + ".sha256"), fetched);
+  }
+
+  @Test
+  public void shouldFallBackToTheSha1IfThereIsNoSha256() throws Exception {
+    remote.put(TARGET + ".sha1", CHECKSUMS.get(Checksums.SHA_1));
+
+    assertTrue(isUnchanged());
+    assertEquals(List.of(TARGET + ".sha256", TARGET + ".sha1"), fetched);
+  }
+
+  @Test
+  public void shouldBeChangedIfTheRemoteChecksumDiffers() throws Exception {
+    remote.put(TARGET + ".sha256", "0".repeat(64));
+
+    assertFalse(isUnchanged());
+  }
+
+  @Test
+  public void shouldBeChangedIfThereAreNoRemoteChecksums() throws Exception {
+    assertFalse(isUnchanged());
+    assertEquals(List.of(TARGET + ".sha256", TARGET + ".sha1"), fetched);
+  }
+
+  @Test
+  public void shouldIgnoreTheCaseOfTheChecksumAndAnyFileNameAfterIt() throws Exception {
+    String sha256 = CHECKSUMS.get(Checksums.SHA_256).toUpperCase(Locale.ROOT);
+    remote.put(TARGET + ".sha256", sha256 + "  a-1.0.jar\n");
+
+    assertTrue(isUnchanged());
+  }
+
+  @Test
+  public void checksumsArePublishedWithLowerCaseExtensionsWithoutDashes() {
+    assertEquals(".sha256", RemoteChecksums.extensionOf(Checksums.SHA_256));
+    assertEquals(".md5", RemoteChecksums.extensionOf(Checksums.MD5));
+  }
+
+  private boolean isUnchanged() throws Exception {
+    return RemoteChecksums.isUnchanged(
+        url -> {
+          fetched.add(url);
+          return Optional.ofNullable(remote.get(url)).map(contents -> contents.getBytes(UTF_8));
+        },
+        TARGET,
+        CHECKSUMS);
+  }
+}
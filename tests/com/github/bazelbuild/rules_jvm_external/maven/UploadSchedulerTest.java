@@ -0,0 +1,120 @@
+// Copyright 2024 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.github.bazelbuild.rules_jvm_external.maven;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Test;
+
+public class UploadSchedulerTest {
+
+  private UploadScheduler scheduler;
+
+  @After
+  public void shutdown() {
+    if (scheduler != null) {
+      scheduler.shutdown();
+    }
+  }
+
+  @Test
+  public void shouldLimitConcurrentUploadsToTheSameHost() throws Exception {
+    scheduler = new UploadScheduler(8, 2);
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger maxRunning = new AtomicInteger();
+
+    List<CompletableFuture<Void>> uploads = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      uploads.add(
+          scheduler.submit(
+              "https://example.com/repo/artifact-" + i + ".jar",
+              () -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                Thread.sleep(5);
+                running.decrementAndGet();
+                return null;
+              }));
+    }
+
+    CompletableFuture.allOf(uploads.toArray(new CompletableFuture<?>[0])).get(30, SECONDS);
+    assertTrue("Saw " + maxRunning.get() + " concurrent uploads", maxRunning.get() <= 2);
+  }
+
+  @Test
+  public void shouldNotHoldUpOtherHostsBehindABusyOne() throws Exception {
+    scheduler = new UploadScheduler(2, 1);
+    CountDownLatch release = new CountDownLatch(1);
+
+    CompletableFuture<Void> blocked =
+        scheduler.submit(
+            "https://slow.example.com/a.jar",
+            () -> {
+              release.await();
+              return null;
+            });
+    // Queued behind the first upload, and must not take up the remaining thread while it waits
+    CompletableFuture<Void> queued = scheduler.submit("https://slow.example.com/b.jar", () -> null);
+    CompletableFuture<Void> other = scheduler.submit("https://fast.example.com/c.jar", () -> null);
+
+    other.get(30, SECONDS);
+    release.countDown();
+    blocked.get(30, SECONDS);
+    queued.get(30, SECONDS);
+  }
+
+  @Test
+  public void shouldReportFailedUploads() throws Exception {
+    scheduler = new UploadScheduler(1, 1);
+    IOException failure = new IOException("Unable to upload");
+
+    CompletableFuture<Void> upload =
+        scheduler.submit(
+            "https://example.com/a.jar",
+            () -> {
+              throw failure;
+            });
+
+    try {
+      upload.get(30, SECONDS);
+      fail();
+    } catch (ExecutionException e) {
+      assertSame(failure, e.getCause());
+    }
+
+    // A failure must not use up the host's connection
+    scheduler.submit("https://example.com/b.jar", () -> null).get(30, SECONDS);
+  }
+
+  @Test
+  public void shouldGroupUploadsByHost() {
+    assertEquals(
+        "https://repo.example.com:8443",
+        UploadScheduler.hostOf("https://repo.example.com:8443/maven2/a/b/1.0/b-1.0.jar"));
+    assertEquals("gs://bucket", UploadScheduler.hostOf("gs://bucket/repository/a.jar"));
+    assertEquals("file://", UploadScheduler.hostOf("file:///tmp/repository/a.jar"));
+  }
+}
@@ -0,0 +1,41 @@
+// Copyright 2024 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.github.bazelbuild.rules_jvm_external.maven;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class UploadSummaryTest {
+
+  @Test
+  public void shouldCountUploadedAndSkippedFilesSeparately() {
+    UploadSummary summary = new UploadSummary();
+    summary.uploaded(100);
+    summary.uploaded(40);
+    summary.skipped(2048);
+
+    assertEquals(
+        "Uploaded 2 files (140 bytes). Skipped 1 unchanged files (2048 bytes).",
+        summary.toString());
+  }
+
+  @Test
+  public void shouldReportNothingWhenNothingHappened() {
+    assertEquals(
+        "Uploaded 0 files (0 bytes). Skipped 0 unchanged files (0 bytes).",
+        new UploadSummary().toString());
+  }
+}
@@ -14,18 +14,40 @@
 
 package com.github.bazelbuild.rules_jvm_external.resolver.maven;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertTrue;
 
 import com.github.bazelbuild.rules_jvm_external.Coordinates;
 import com.github.bazelbuild.rules_jvm_external.resolver.MavenRepo;
+import com.github.bazelbuild.rules_jvm_external.resolver.PathHandler;
 import com.github.bazelbuild.rules_jvm_external.resolver.netrc.Netrc;
+import com.github.bazelbuild.rules_jvm_external.resolver.remote.ArtifactStore;
 import com.github.bazelbuild.rules_jvm_external.resolver.remote.DownloadResult;
 import com.github.bazelbuild.rules_jvm_external.resolver.remote.Downloader;
 import com.github.bazelbuild.rules_jvm_external.resolver.ui.NullListener;
+import com.google.common.hash.Hashing;
+import com.google.common.io.MoreFiles;
+import com.sun.net.httpserver.BasicAuthenticator;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.junit.Test;
 
 public class DownloaderTest {
@@ -63,4 +85,531 @@ public class DownloaderTest {
 
     assertTrue(downloadResult.getPath().isEmpty());
   }
+
+  @Test
+  public void shouldNotRequireAnArtifactToBePresentIfItHasBeenRelocated() throws IOException {
+    Coordinates coords = new Coordinates("com.example:relocated:1.0");
+
+    String pomContents =
+        "<project>\n"
+            + "  <modelVersion>4.0.0</modelVersion>\n"
+            + "  <groupId>"
+            + coords.getGroupId()
+            + "</groupId>\n"
+            + "  <artifactId>"
+            + coords.getArtifactId()
+            + "</artifactId>\n"
+            + "  <version>"
+            + coords.getVersion()
+            + "</version>\n"
+            + "  <distributionManagement>\n"
+            + "    <relocation>\n"
+            + "      <groupId>com.example.moved</groupId>\n"
+            + "    </relocation>\n"
+            + "  </distributionManagement>\n"
+            + "</project>\n";
+
+    Path repo = MavenRepo.create().writePomFile(coords, pomContents).getPath();
+
+    DownloadResult downloadResult =
+        new Downloader(
+                Netrc.fromUserHome(),
+                Files.createTempDirectory("local"),
+                Set.of(repo.toUri()),
+                new NullListener(),
+                false)
+            .download(coords);
+
+    assertTrue(downloadResult.getPath().isEmpty());
+    assertEquals(Set.of(repo.toUri()), downloadResult.getRepositories());
+  }
+
+  @Test
+  public void shouldCalculateTheSha256OfFilesDownloadedOverHttp() throws IOException {
+    Coordinates coords = new Coordinates("com.example:hashed:1.0");
+    Path repo = MavenRepo.create().add(coords).getPath();
+
+    HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/", new PathHandler(repo));
+    server.start();
+
+    try {
+      URI remote = URI.create("http://localhost:" + server.getAddress().getPort());
+
+      DownloadResult result =
+          new Downloader(
+                  Netrc.fromUserHome(),
+                  Files.createTempDirectory("local"),
+                  Set.of(remote),
+                  new NullListener(),
+                  false)
+              .download(coords);
+
+      String expected =
+          MoreFiles.asByteSource(repo.resolve(coords.toRepoPath()))
+              .hash(Hashing.sha256())
+              .toString();
+      assertEquals(expected, result.getSha256().get());
+    } finally {
+      server.stop(0);
+    }
+  }
+
+  @Test
+  public void shouldAuthenticateWithTheLoginAndPasswordFromTheNetrc() throws IOException {
+    Coordinates coords = new Coordinates("com.example:private:1.0");
+    Path repo = MavenRepo.create().add(coords).getPath();
+
+    HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    HttpContext context = server.createContext("/", new PathHandler(repo));
+    context.setAuthenticator(
+        new BasicAuthenticator("maven") {
+          @Override
+          public boolean checkCredentials(String username, String password) {
+            return "cheese".equals(username) && "hunter2".equals(password);
+          }
+        });
+    server.start();
+
+    try {
+      URI remote = URI.create("http://localhost:" + server.getAddress().getPort());
+      // The account is there to make sure that it isn't sent in place of the login
+      String netrcContents = "machine localhost login cheese password hunter2 account dairy\n";
+      Netrc netrc = Netrc.fromStream(new ByteArrayInputStream(netrcContents.getBytes(UTF_8)));
+
+      DownloadResult result =
+          new Downloader(
+                  netrc,
+                  Files.createTempDirectory("local"),
+                  Set.of(remote),
+                  new NullListener(),
+                  false)
+              .download(coords);
+
+      String expected =
+          MoreFiles.asByteSource(repo.resolve(coords.toRepoPath()))
+              .hash(Hashing.sha256())
+              .toString();
+      assertTrue(result.getPath().isPresent());
+      assertEquals(expected, result.getSha256().get());
+    } finally {
+      server.stop(0);
+    }
+  }
+
+  @Test
+  public void shouldReportEveryRepositoryHostingAnArtifactInDeclaredOrder() throws IOException {
+    Coordinates coords = new Coordinates("com.example:mirrored:1.0");
+    Path mirror = MavenRepo.create().add(coords).getPath();
+    Path empty = MavenRepo.create().getPath();
+
+    HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/", new PathHandler(mirror));
+    server.start();
+
+    try {
+      URI first = URI.create("http://localhost:" + server.getAddress().getPort());
+      URI second = empty.toUri();
+      URI third = mirror.toUri();
+
+      DownloadResult result =
+          new Downloader(
+                  Netrc.fromUserHome(),
+                  Files.createTempDirectory("local"),
+                  List.of(third, second, first),
+                  new NullListener(),
+                  false)
+              .download(coords);
+
+      assertEquals(List.of(third, first), List.copyOf(result.getRepositories()));
+    } finally {
+      server.stop(0);
+    }
+  }
+
+  @Test
+  public void shouldServeWarmDownloadsFromTheArtifactStoreWithoutNetworkAccess()
+      throws IOException {
+    Coordinates coords = new Coordinates("com.example:stored:1.0");
+    Path repo = MavenRepo.create().add(coords).getPath();
+
+    AtomicInteger requestCount = new AtomicInteger();
+    PathHandler handler = new PathHandler(repo);
+    HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext(
+        "/",
+        exchange -> {
+          requestCount.incrementAndGet();
+          handler.handle(exchange);
+        });
+    server.start();
+
+    try {
+      URI remote = URI.create("http://localhost:" + server.getAddress().getPort());
+      ArtifactStore store = new ArtifactStore(Files.createTempDirectory("store"));
+
+      DownloadResult cold =
+          new Downloader(
+                  Netrc.fromUserHome(),
+                  Files.createTempDirectory("local"),
+                  Set.of(remote),
+                  new NullListener(),
+                  false,
+                  store)
+              .download(coords);
+      int coldRequests = requestCount.get();
+      assertTrue(coldRequests > 0);
+
+      // A fresh local repository, as we'd see on a new CI run sharing the store.
+      Path localRepo = Files.createTempDirectory("local");
+      DownloadResult warm =
+          new Downloader(
+                  Netrc.fromUserHome(), localRepo, Set.of(remote), new NullListener(), false, store)
+              .download(coords);
+
+      assertEquals(coldRequests, requestCount.get());
+      assertEquals(cold.getSha256(), warm.getSha256());
+      assertEquals(Set.of(remote), warm.getRepositories());
+      assertEquals(localRepo.resolve(coords.toRepoPath()), warm.getPath().get());
+      assertTrue(Files.exists(warm.getPath().get()));
+    } finally {
+      server.stop(0);
+    }
+  }
+
+  @Test
+  public void shouldPreferTheLocalRepositoryToTheArtifactStoreIfTheirContentsDiffer()
+      throws IOException {
+    Coordinates coords = new Coordinates("com.example:republished:1.0");
+    Path repo = MavenRepo.create().add(coords).getPath();
+    ArtifactStore store = new ArtifactStore(Files.createTempDirectory("store"));
+
+    new Downloader(
+            Netrc.fromUserHome(),
+            Files.createTempDirectory("local"),
+            Set.of(repo.toUri()),
+            new NullListener(),
+            false,
+            store)
+        .download(coords);
+
+    // Something other than the resolver has put a different copy in the local repository
+    Path localRepo = Files.createTempDirectory("local");
+    Path local = localRepo.resolve(coords.toRepoPath());
+    Files.createDirectories(local.getParent());
+    Files.writeString(local, "Republished");
+
+    DownloadResult result =
+        new Downloader(
+                Netrc.fromUserHome(),
+                localRepo,
+                Set.of(repo.toUri()),
+                new NullListener(),
+                false,
+                store)
+            .download(coords);
+
+    String expected = MoreFiles.asByteSource(local).hash(Hashing.sha256()).toString();
+    assertEquals(expected, result.getSha256().get());
+    assertEquals(expected, store.lookup(coords.toRepoPath()).get().getSha256());
+  }
+
+  @Test
+  public void shouldNotKeepSnapshotsInTheArtifactStore() throws IOException {
+    Coordinates coords = new Coordinates("com.example:snapshot:1.0-SNAPSHOT");
+    Path repo = MavenRepo.create().add(coords).getPath();
+
+    HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/", new PathHandler(repo));
+    server.start();
+
+    try {
+      URI remote = URI.create("http://localhost:" + server.getAddress().getPort());
+      ArtifactStore store = new ArtifactStore(Files.createTempDirectory("store"));
+
+      DownloadResult first =
+          new Downloader(
+                  Netrc.fromUserHome(),
+                  Files.createTempDirectory("local"),
+                  Set.of(remote),
+                  new NullListener(),
+                  false,
+                  store)
+              .download(coords);
+
+      // A new snapshot is published
+      Path published = repo.resolve(coords.toRepoPath());
+      Files.writeString(published, "A newer snapshot");
+
+      DownloadResult second =
+          new Downloader(
+                  Netrc.fromUserHome(),
+                  Files.createTempDirectory("local"),
+                  Set.of(remote),
+                  new NullListener(),
+                  false,
+                  store)
+              .download(coords);
+
+      assertTrue(store.lookup(coords.toRepoPath()).isEmpty());
+      assertNotEquals(first.getSha256(), second.getSha256());
+      assertEquals(
+          MoreFiles.asByteSource(published).hash(Hashing.sha256()).toString(),
+          second.getSha256().get());
+    } finally {
+      server.stop(0);
+    }
+  }
+
+  @Test
+  public void shouldUseMavenMetadataToFindOutWhichRepositoriesHostAnArtifact()
+      throws IOException {
+    Coordinates coords = new Coordinates("com.example:listed:1.0");
+    Path first = MavenRepo.create().add(coords).getPath();
+    Path second = MavenRepo.create().add(coords).getPath();
+    for (Path repo : List.of(first, second)) {
+      Path metadata = repo.resolve("com/example/listed/maven-metadata.xml");
+      Files.writeString(
+          metadata,
+          "<metadata>\n"
+              + "  <groupId>com.example</groupId>\n"
+              + "  <artifactId>listed</artifactId>\n"
+              + "  <versioning>\n"
+              + "    <versions>\n"
+              + "      <version>0.9</version>\n"
+              + "      <version>1.0</version>\n"
+              + "    </versions>\n"
+              + "  </versioning>\n"
+              + "</metadata>\n");
+    }
+
+    List<String> requests = Collections.synchronizedList(new ArrayList<>());
+    HttpServer firstServer = recordingServer(first, "first", requests);
+    HttpServer secondServer = recordingServer(second, "second", requests);
+
+    try {
+      URI firstUri = URI.create("http://localhost:" + firstServer.getAddress().getPort());
+      URI secondUri = URI.create("http://localhost:" + secondServer.getAddress().getPort());
+
+      Downloader downloader =
+          new Downloader(
+              Netrc.fromUserHome(),
+              Files.createTempDirectory("local"),
+              List.of(firstUri, secondUri),
+              new NullListener(),
+              true,
+              null,
+              true);
+
+      // The second time around the jar is already in the local repository, so every repository is
+      // probed. The metadata should only be fetched once, and no file should need a HEAD request.
+      DownloadResult result = downloader.download(coords);
+      DownloadResult again = downloader.download(coords);
+
+      assertEquals(List.of(firstUri, secondUri), List.copyOf(result.getRepositories()));
+      assertEquals(List.of(firstUri, secondUri), List.copyOf(again.getRepositories()));
+      assertTrue(requests.toString(), requests.stream().noneMatch(r -> r.contains("HEAD")));
+      assertEquals(
+          1,
+          requests.stream()
+              .filter(r -> r.equals("second GET /com/example/listed/maven-metadata.xml"))
+              .count());
+    } finally {
+      firstServer.stop(0);
+      secondServer.stop(0);
+    }
+  }
+
+  @Test
+  public void shouldIgnoreMavenMetadataWhichDeclaresADoctype() throws IOException {
+    Coordinates coords = new Coordinates("com.example:doctype:1.0");
+    Path repo = MavenRepo.create().add(coords).getPath();
+    Files.writeString(
+        repo.resolve("com/example/doctype/maven-metadata.xml"),
+        "<?xml version=\"1.0\"?>\n"
+            + "<!DOCTYPE metadata [<!ENTITY listed \"1.0\">]>\n"
+            + "<metadata>\n"
+            + "  <versioning>\n"
+            + "    <versions>\n"
+            + "      <version>&listed;</version>\n"
+            + "    </versions>\n"
+            + "  </versioning>\n"
+            + "</metadata>\n");
+
+    List<String> requests = Collections.synchronizedList(new ArrayList<>());
+    HttpServer first = recordingServer(repo, "first", requests);
+    HttpServer second = recordingServer(repo, "second", requests);
+
+    try {
+      URI firstUri = URI.create("http://localhost:" + first.getAddress().getPort());
+      URI secondUri = URI.create("http://localhost:" + second.getAddress().getPort());
+
+      DownloadResult result =
+          new Downloader(
+                  Netrc.fromUserHome(),
+                  Files.createTempDirectory("local"),
+                  List.of(firstUri, secondUri),
+                  new NullListener(),
+                  false,
+                  null,
+                  true)
+              .download(coords);
+
+      // The metadata can't be trusted, so we have to ask about the file itself
+      assertEquals(List.of(firstUri, secondUri), List.copyOf(result.getRepositories()));
+      assertTrue(
+          requests.toString(),
+          requests.stream().anyMatch(r -> r.equals("second HEAD /" + coords.toRepoPath())));
+    } finally {
+      first.stop(0);
+      second.stop(0);
+    }
+  }
+
+  @Test
+  public void shouldHedgeSlowDownloadsAndPreferTheQuickestRepositoryAfterwards()
+      throws IOException, InterruptedException {
+    Coordinates first = new Coordinates("com.example:hedged:1.0");
+    Coordinates second = new Coordinates("com.example:ranked:1.0");
+    Path slow = MavenRepo.create().add(first).add(second).getPath();
+    Path fast = MavenRepo.create().add(first).add(second).getPath();
+    // Give the slow repo's copy different contents, so we can tell which one we were given.
+    Files.writeString(slow.resolve(first.toRepoPath()), "Too slow");
+
+    List<String> requests = Collections.synchronizedList(new ArrayList<>());
+    HttpServer slowServer = recordingServer(slow, "slow", requests, 2000);
+    HttpServer fastServer = recordingServer(fast, "fast", requests, 0);
+    Set<Path> tempFilesBefore = listTempDownloads();
+
+    try {
+      URI slowUri = URI.create("http://localhost:" + slowServer.getAddress().getPort());
+      URI fastUri = URI.create("http://localhost:" + fastServer.getAddress().getPort());
+
+      // We know nothing about either repository yet, so the slow one is asked first, as declared.
+      Downloader downloader =
+          new Downloader(
+              Netrc.fromUserHome(),
+              Files.createTempDirectory("local"),
+              List.of(slowUri, fastUri),
+              new NullListener(),
+              false,
+              new ArtifactStore(Files.createTempDirectory("store")));
+      DownloadResult hedged = downloader.download(first);
+
+      String expected =
+          MoreFiles.asByteSource(fast.resolve(first.toRepoPath()))
+              .hash(Hashing.sha256())
+              .toString();
+      assertEquals(expected, hedged.getSha256().get());
+      assertEquals(List.of(slowUri, fastUri), List.copyOf(hedged.getRepositories()));
+
+      // Now the fast repository has proven itself, it should be asked first, and without hedging.
+      requests.clear();
+      DownloadResult ranked = downloader.download(second);
+
+      assertEquals(List.of(slowUri, fastUri), List.copyOf(ranked.getRepositories()));
+      assertEquals(requests.toString(), "fast GET /" + second.toRepoPath(), requests.get(0));
+
+      // The loser of the race may still be finishing off in the background
+      long deadline = System.currentTimeMillis() + 10_000;
+      Set<Path> leftOver = listTempDownloads();
+      while (!tempFilesBefore.containsAll(leftOver) && System.currentTimeMillis() < deadline) {
+        Thread.sleep(100);
+        leftOver = listTempDownloads();
+      }
+      leftOver.removeAll(tempFilesBefore);
+      assertEquals(Set.of(), leftOver);
+    } finally {
+      slowServer.stop(0);
+      fastServer.stop(0);
+    }
+  }
+
+  @Test
+  public void shouldKeepHedgingWhenTheNewestRepositoryDoesNotHaveTheFile() throws IOException {
+    Coordinates coords = new Coordinates("com.example:hedged:1.0");
+    Path slow = MavenRepo.create().add(coords).getPath();
+    Path missing = MavenRepo.create().getPath();
+    Path hit = MavenRepo.create().add(coords).getPath();
+    // Give the slow repo's copy different contents, so we can tell which one we were given.
+    Files.writeString(slow.resolve(coords.toRepoPath()), "Too slow");
+
+    List<String> requests = Collections.synchronizedList(new ArrayList<>());
+    HttpServer slowServer = recordingServer(slow, "slow", requests, 5000);
+    HttpServer missingServer = recordingServer(missing, "missing", requests, 0);
+    HttpServer hitServer = recordingServer(hit, "hit", requests, 0);
+
+    try {
+      URI slowUri = URI.create("http://localhost:" + slowServer.getAddress().getPort());
+      URI missingUri = URI.create("http://localhost:" + missingServer.getAddress().getPort());
+      URI hitUri = URI.create("http://localhost:" + hitServer.getAddress().getPort());
+
+      // Nothing is known about the repositories, so they're asked in the order they're declared.
+      // The missing repository answers quickly, and shouldn't leave us waiting on the slow one.
+      DownloadResult result =
+          new Downloader(
+                  Netrc.fromUserHome(),
+                  Files.createTempDirectory("local"),
+                  List.of(slowUri, missingUri, hitUri),
+                  new NullListener(),
+                  false)
+              .download(coords);
+
+      String expected =
+          MoreFiles.asByteSource(hit.resolve(coords.toRepoPath()))
+              .hash(Hashing.sha256())
+              .toString();
+      assertEquals(requests.toString(), expected, result.getSha256().get());
+      assertEquals(List.of(slowUri, hitUri), List.copyOf(result.getRepositories()));
+      assertTrue(
+          requests.toString(),
+          requests.indexOf("hit GET /" + coords.toRepoPath())
+              > requests.indexOf("missing GET /" + coords.toRepoPath()));
+    } finally {
+      slowServer.stop(0);
+      missingServer.stop(0);
+      hitServer.stop(0);
+    }
+  }
+
+  private HttpServer recordingServer(Path repo, String name, List<String> requests)
+      throws IOException {
+    return recordingServer(repo, name, requests, 0);
+  }
+
+  private HttpServer recordingServer(
+      Path repo, String name, List<String> requests, long delayMillis) throws IOException {
+    PathHandler handler = new PathHandler(repo);
+    HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    // Allow slow responses to overlap with other requests
+    server.setExecutor(Executors.newCachedThreadPool());
+    server.createContext(
+        "/",
+        exchange -> {
+          requests.add(
+              name + " " + exchange.getRequestMethod() + " " + exchange.getRequestURI().getPath());
+          try {
+            Thread.sleep(delayMillis);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          handler.handle(exchange);
+        });
+    server.start();
+    return server;
+  }
+
+  /** The files the {@code HttpDownloader} has created in the temporary directory. */
+  private Set<Path> listTempDownloads() throws IOException {
+    Path tmp = Paths.get(System.getProperty("java.io.tmpdir"));
+    try (Stream<Path> files = Files.list(tmp)) {
+      return files
+          .filter(
+              path -> {
+                String name = path.getFileName().toString();
+                return name.startsWith("resolver") && name.endsWith("download");
+              })
+          .collect(Collectors.toCollection(HashSet::new));
+    }
+  }
 }
@@ -14,16 +14,31 @@
 
 package com.github.bazelbuild.rules_jvm_external.resolver.maven;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import com.github.bazelbuild.rules_jvm_external.Coordinates;
 import com.github.bazelbuild.rules_jvm_external.resolver.MavenRepo;
+import com.github.bazelbuild.rules_jvm_external.resolver.PathHandler;
 import com.github.bazelbuild.rules_jvm_external.resolver.Resolver;
 import com.github.bazelbuild.rules_jvm_external.resolver.ResolverTestBase;
 import com.github.bazelbuild.rules_jvm_external.resolver.cmd.ResolverConfig;
+import com.github.bazelbuild.rules_jvm_external.resolver.events.DownloadEvent;
 import com.github.bazelbuild.rules_jvm_external.resolver.events.EventListener;
 import com.github.bazelbuild.rules_jvm_external.resolver.netrc.Netrc;
+import com.github.bazelbuild.rules_jvm_external.resolver.remote.HttpDownloader;
+import com.github.bazelbuild.rules_jvm_external.resolver.remote.PomCache;
+import com.github.bazelbuild.rules_jvm_external.resolver.ui.NullListener;
+import com.google.common.graph.Graph;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
 import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import org.eclipse.aether.transfer.ArtifactNotFoundException;
 import org.junit.Test;
 
@@ -59,4 +74,44 @@ public class MavenResolverTest extends ResolverTestBase {
       }
     }
   }
+
+  @Test
+  public void shouldFetchFromHttpRepositoriesUsingTheSharedHttpDownloader() throws IOException {
+    Coordinates coords = new Coordinates("com.example:shared:1.0");
+    Path repo = MavenRepo.create().add(coords).getPath();
+
+    HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/", new PathHandler(repo));
+    server.start();
+
+    try {
+      URI remote = URI.create("http://localhost:" + server.getAddress().getPort());
+
+      Set<String> fetched = ConcurrentHashMap.newKeySet();
+      HttpDownloader httpDownloader =
+          new HttpDownloader(
+              new Netrc(null, Map.of()),
+              event -> {
+                if (event instanceof DownloadEvent) {
+                  fetched.add(((DownloadEvent) event).getTarget());
+                }
+              });
+      Resolver resolver =
+          new MavenResolver(
+              new Netrc(null, Map.of()),
+              ResolverConfig.DEFAULT_MAX_THREADS,
+              new NullListener(),
+              httpDownloader,
+              new PomCache());
+
+      Graph<Coordinates> resolved =
+          resolver.resolve(prepareRequestFor(remote, coords)).getResolution();
+
+      assertEquals(Set.of(coords), resolved.nodes());
+      String pom = remote + "/" + coords.setExtension("pom").toRepoPath();
+      assertTrue(fetched.toString(), fetched.contains(pom));
+    } finally {
+      server.stop(0);
+    }
+  }
 }
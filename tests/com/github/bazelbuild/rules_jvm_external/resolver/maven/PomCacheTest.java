@@ -0,0 +1,131 @@
+// Copyright 2024 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.github.bazelbuild.rules_jvm_external.resolver.maven;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import com.github.bazelbuild.rules_jvm_external.Checksums;
+import com.github.bazelbuild.rules_jvm_external.Coordinates;
+import com.github.bazelbuild.rules_jvm_external.resolver.remote.PomCache;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import org.junit.Test;
+
+public class PomCacheTest {
+
+  private final Coordinates coords = new Coordinates("com.example:cached:1.0");
+
+  @Test
+  public void shouldReadThePackagingOfAPom() throws IOException {
+    Path pom = writePom(coords, "<packaging> pom </packaging>");
+
+    PomCache.ParsedPom parsed = new PomCache().get(coords, pom);
+
+    assertEquals("pom", parsed.getPackaging());
+    assertFalse(parsed.getRelocation().isPresent());
+  }
+
+  @Test
+  public void shouldDefaultToJarPackaging() throws IOException {
+    Path pom = writePom(coords, "");
+
+    assertEquals("jar", new PomCache().get(coords, pom).getPackaging());
+  }
+
+  @Test
+  public void shouldReadRelocations() throws IOException {
+    Path pom =
+        writePom(
+            coords,
+            "<distributionManagement><relocation>"
+                + "<groupId>com.example.moved</groupId>"
+                + "</relocation></distributionManagement>");
+
+    Optional<Coordinates> relocation = new PomCache().get(coords, pom).getRelocation();
+
+    assertEquals(Optional.of(new Coordinates("com.example.moved:cached:1.0")), relocation);
+  }
+
+  @Test
+  public void shouldOnlyParseEachPomOnce() throws IOException {
+    Path pom = writePom(coords, "<packaging>pom</packaging>");
+    String sha256 = Checksums.sha256(pom);
+    PomCache cache = new PomCache();
+
+    PomCache.ParsedPom first = cache.get(coords, pom);
+    // Once parsed, a POM with a known digest doesn't need to be read again
+    Files.delete(pom);
+    PomCache.ParsedPom second = cache.get(coords.setExtension("jar"), sha256, pom);
+
+    assertSame(first, second);
+  }
+
+  @Test
+  public void shouldParseAgainIfThePomHasChanged() throws IOException {
+    Path pom = writePom(coords, "<packaging>pom</packaging>");
+    PomCache cache = new PomCache();
+
+    PomCache.ParsedPom first = cache.get(coords, pom);
+    Files.writeString(pom, pomContents(coords, "<packaging>aar</packaging>"), UTF_8);
+    PomCache.ParsedPom second = cache.get(coords, pom);
+
+    assertNotSame(first, second);
+    assertEquals("aar", second.getPackaging());
+  }
+
+  @Test
+  public void shouldReportPomsWhichCannotBeParsed() throws IOException {
+    Path pom = Files.createTempFile("broken", ".pom");
+    Files.writeString(pom, "<project><packaging>", UTF_8);
+
+    try {
+      new PomCache().get(coords, pom);
+      fail("Expected an IOException");
+    } catch (IOException e) {
+      // This is good
+    }
+  }
+
+  private static Path writePom(Coordinates coords, String extra) throws IOException {
+    Path pom = Files.createTempFile(coords.getArtifactId(), ".pom");
+    Files.writeString(pom, pomContents(coords, extra), UTF_8);
+    return pom;
+  }
+
+  private static String pomContents(Coordinates coords, String extra) {
+    return "<project>\n"
+        + "  <modelVersion>4.0.0</modelVersion>\n"
+        + "  <groupId>"
+        + coords.getGroupId()
+        + "</groupId>\n"
+        + "  <artifactId>"
+        + coords.getArtifactId()
+        + "</artifactId>\n"
+        + "  <version>"
+        + coords.getVersion()
+        + "</version>\n"
+        + "  "
+        + extra
+        + "\n"
+        + "</project>\n";
+  }
+}
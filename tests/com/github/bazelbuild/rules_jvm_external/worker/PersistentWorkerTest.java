@@ -0,0 +1,167 @@
+// Copyright 2024 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.github.bazelbuild.rules_jvm_external.worker;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PersistentWorkerTest {
+
+  @Rule public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void eachRequestIsPassedToTheToolAndAnswered() throws IOException {
+    List<List<String>> seen = new ArrayList<>();
+    ByteArrayOutputStream requests = new ByteArrayOutputStream();
+    writeRequest(requests, 0, "--source", "in.jar");
+    writeRequest(requests, 0, "--output", "out.jar");
+    ByteArrayOutputStream responses = new ByteArrayOutputStream();
+
+    PersistentWorker.run(
+        args -> seen.add(Arrays.asList(args)),
+        new ByteArrayInputStream(requests.toByteArray()),
+        responses);
+
+    assertEquals(List.of(List.of("--source", "in.jar"), List.of("--output", "out.jar")), seen);
+    // Two empty responses, each preceded by its length
+    assertArrayEquals(new byte[] {0, 0}, responses.toByteArray());
+  }
+
+  @Test
+  public void failuresAreReportedToBazel() throws IOException {
+    ByteArrayOutputStream requests = new ByteArrayOutputStream();
+    writeRequest(requests, 0, "--source", "missing.jar");
+    ByteArrayOutputStream responses = new ByteArrayOutputStream();
+
+    PersistentWorker.run(
+        args -> {
+          throw new IOException("Cannot find " + args[1]);
+        },
+        new ByteArrayInputStream(requests.toByteArray()),
+        responses);
+
+    byte[] response = responses.toByteArray();
+    // The stack trace makes the message long enough to need a two byte length
+    assertEquals(response.length - 2, (response[0] & 0x7f) | response[1] << 7);
+    // exit_code = 1
+    assertEquals(0x08, response[2]);
+    assertEquals(1, response[3]);
+    assertTrue(new String(response, UTF_8).contains("Cannot find missing.jar"));
+  }
+
+  @Test
+  public void whatTheToolPrintsIsReturnedWithItsResponse() throws IOException {
+    ByteArrayOutputStream requests = new ByteArrayOutputStream();
+    writeRequest(requests, 0, "--source", "in.jar");
+    ByteArrayOutputStream responses = new ByteArrayOutputStream();
+    PrintStream originalOut = System.out;
+
+    PersistentWorker.run(
+        args -> {
+          System.out.println("Read " + args[1]);
+          System.err.println("WARNING: Nothing to do");
+        },
+        new ByteArrayInputStream(requests.toByteArray()),
+        responses);
+
+    assertSame(originalOut, System.out);
+    String expected = "Read in.jar" + System.lineSeparator() + "WARNING: Nothing to do";
+    String response = new String(responses.toByteArray(), UTF_8);
+    assertTrue(response, response.contains(expected));
+  }
+
+  @Test
+  public void multiplexRequestsAreRunConcurrently() throws IOException {
+    CountDownLatch secondStarted = new CountDownLatch(1);
+    ByteArrayOutputStream requests = new ByteArrayOutputStream();
+    writeRequest(requests, 1, "first");
+    writeRequest(requests, 2, "second");
+    ByteArrayOutputStream responses = new ByteArrayOutputStream();
+
+    PersistentWorker.run(
+        args -> {
+          if ("first".equals(args[0])) {
+            // This would never finish if the requests were run one after the other
+            if (!secondStarted.await(30, TimeUnit.SECONDS)) {
+              throw new AssertionError("Second request was not started");
+            }
+          } else {
+            secondStarted.countDown();
+          }
+        },
+        new ByteArrayInputStream(requests.toByteArray()),
+        responses);
+
+    // Each response only contains its request_id. Once the second has started, either may finish
+    // first.
+    byte[] response = responses.toByteArray();
+    assertEquals(6, response.length);
+    assertEquals(Set.of(1, 2), Set.of((int) response[2], (int) response[5]));
+    assertArrayEquals(new byte[] {2, 0x18}, Arrays.copyOfRange(response, 0, 2));
+    assertArrayEquals(new byte[] {2, 0x18}, Arrays.copyOfRange(response, 3, 5));
+  }
+
+  @Test
+  public void paramFilesAreExpanded() throws IOException {
+    Path params = temp.newFile("args.params").toPath();
+    Files.write(params, List.of("--source", "in.jar", "--manifest-entry", "Target-Label:@a//:b"));
+
+    String[] expanded =
+        PersistentWorker.expandParamFiles(new String[] {"@" + params, "--make-safe"});
+
+    assertArrayEquals(
+        new String[] {
+          "--source", "in.jar", "--manifest-entry", "Target-Label:@a//:b", "--make-safe"
+        },
+        expanded);
+  }
+
+  private static void writeRequest(ByteArrayOutputStream out, int requestId, String... args) {
+    ByteArrayOutputStream message = new ByteArrayOutputStream();
+    for (String arg : args) {
+      byte[] bytes = arg.getBytes(UTF_8);
+      // arguments, field 1
+      message.write(0x0a);
+      message.write(bytes.length);
+      message.write(bytes, 0, bytes.length);
+    }
+    if (requestId != 0) {
+      // request_id, field 3
+      message.write(0x18);
+      message.write(requestId);
+    }
+    out.write(message.size());
+    out.write(message.toByteArray(), 0, message.size());
+  }
+}
@@ -0,0 +1,72 @@
+// Copyright 2024 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.github.bazelbuild.rules_jvm_external.zip;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class RawZipFilePoolTest {
+
+  @Rule public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void zipsAreOnlyOpenedOnceWhileInThePool() throws IOException {
+    Path zip = createZip("one.zip", "Hello");
+
+    try (RawZipFilePool pool = new RawZipFilePool(2)) {
+      assertSame(pool.get(zip), pool.get(zip));
+    }
+  }
+
+  @Test
+  public void evictedZipsCanStillBeRead() throws IOException {
+    Path first = createZip("first.zip", "First");
+    Path second = createZip("second.zip", "Second");
+
+    try (RawZipFilePool pool = new RawZipFilePool(1)) {
+      RawZipFile original = pool.get(first);
+      assertEquals("Second", read(pool.get(second)));
+
+      RawZipFile reopened = pool.get(first);
+      assertSame(original.getEntries(), reopened.getEntries());
+      assertEquals("First", read(reopened));
+    }
+  }
+
+  private Path createZip(String name, String contents) throws IOException {
+    Path zip = temp.newFile(name).toPath();
+    try (OutputStream os = Files.newOutputStream(zip);
+        StableZipWriter writer = new StableZipWriter(os)) {
+      writer.putEntry("contents.txt", contents.getBytes(UTF_8));
+    }
+    return zip;
+  }
+
+  private static String read(RawZipFile zip) throws IOException {
+    try (InputStream is = zip.getInputStream(zip.getEntry("contents.txt"))) {
+      return new String(is.readAllBytes(), UTF_8);
+    }
+  }
+}
@@ -0,0 +1,176 @@
+// Copyright 2024 The Bazel Authors. All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//    http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.github.bazelbuild.rules_jvm_external.zip;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class StableZipWriterTest {
+
+  @Rule public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void writtenZipsCanBeReadByTheJdk() throws IOException {
+    Path zip = temp.newFile("out.zip").toPath();
+    try (OutputStream os = Files.newOutputStream(zip);
+        StableZipWriter writer = new StableZipWriter(os)) {
+      writer.putDirectory("com/");
+      writer.putEntry("com/Example.class", "Hello".getBytes(UTF_8));
+      writer.putEntry("com/Example.java", "World".getBytes(UTF_8));
+    }
+
+    try (ZipFile zipFile = new ZipFile(zip.toFile())) {
+      List<String> names = new ArrayList<>();
+      zipFile.stream().forEach(entry -> names.add(entry.getName()));
+      assertEquals(List.of("com/", "com/Example.class", "com/Example.java"), names);
+
+      ZipEntry clazz = zipFile.getEntry("com/Example.class");
+      assertEquals("Hello", read(zipFile, clazz));
+      assertEquals(new StableZipEntry("com/Example.class").getTime(), clazz.getTime());
+
+      ZipEntry source = zipFile.getEntry("com/Example.java");
+      assertEquals("World", read(zipFile, source));
+      assertEquals(new StableZipEntry("com/Example.java").getTime(), source.getTime());
+    }
+  }
+
+  @Test
+  public void canCopyEntriesFromZipsWithAPreambleAndDataDescriptors() throws IOException {
+    // `ZipOutputStream` writes sizes after the data of deflated entries, rather than before it
+    Path source = temp.newFile("source.zip").toPath();
+    try (OutputStream os = Files.newOutputStream(source)) {
+      os.write("#!/bin/sh\nexec java -jar \"$0\"\n".getBytes(UTF_8));
+      try (ZipOutputStream zos = new ZipOutputStream(os)) {
+        zos.putNextEntry(new ZipEntry("first.txt"));
+        zos.write("First".getBytes(UTF_8));
+        zos.putNextEntry(new ZipEntry("second.txt"));
+        zos.write("Second".getBytes(UTF_8));
+      }
+    }
+
+    Path copy = temp.newFile("copy.zip").toPath();
+    try (RawZipFile raw = new RawZipFile(source);
+        OutputStream os = Files.newOutputStream(copy);
+        StableZipWriter writer = new StableZipWriter(os)) {
+      assertNull(raw.getEntry("missing.txt"));
+      for (RawZipEntry entry : raw.getEntries()) {
+        writer.copyEntry(entry.getName(), raw, entry);
+      }
+    }
+
+    try (ZipFile zipFile = new ZipFile(copy.toFile())) {
+      assertEquals("First", read(zipFile, zipFile.getEntry("first.txt")));
+      assertEquals("Second", read(zipFile, zipFile.getEntry("second.txt")));
+    }
+  }
+
+  @Test
+  public void canWriteMoreEntriesThanFitInTheEndOfCentralDirectory() throws IOException {
+    int count = 70_000;
+    Path zip = temp.newFile("large.zip").toPath();
+    try (OutputStream os = Files.newOutputStream(zip);
+        StableZipWriter writer = new StableZipWriter(os)) {
+      for (int i = 0; i < count; i++) {
+        writer.putEntry("entry" + i, new byte[0]);
+      }
+    }
+
+    try (ZipFile zipFile = new ZipFile(zip.toFile())) {
+      assertEquals(count, zipFile.size());
+    }
+    try (RawZipFile raw = new RawZipFile(zip)) {
+      assertEquals(count, raw.getEntries().size());
+      assertEquals("entry69999", raw.getEntries().get(count - 1).getName());
+    }
+  }
+
+  @Test
+  public void compressingInParallelGivesTheSameOutputAsCompressingSerially() throws IOException {
+    Path serial = temp.newFile("serial.zip").toPath();
+    writeManyEntries(serial, Runnable::run);
+
+    Path parallel = temp.newFile("parallel.zip").toPath();
+    ForkJoinPool pool = new ForkJoinPool(8);
+    try {
+      writeManyEntries(parallel, pool);
+    } finally {
+      pool.shutdown();
+    }
+
+    assertArrayEquals(Files.readAllBytes(serial), Files.readAllBytes(parallel));
+  }
+
+  @Test
+  public void duplicateEntriesAreRejected() throws IOException {
+    Path zip = temp.newFile("out.zip").toPath();
+    try (OutputStream os = Files.newOutputStream(zip);
+        StableZipWriter writer = new StableZipWriter(os)) {
+      writer.putEntry("duplicate.txt", new byte[0]);
+      try {
+        writer.putEntry("duplicate.txt", new byte[0]);
+        fail("Expected a ZipException");
+      } catch (ZipException expected) {
+        // Expected
+      }
+    }
+  }
+
+  private static void writeManyEntries(Path zip, Executor executor) throws IOException {
+    Random random = new Random(42);
+    try (OutputStream os = Files.newOutputStream(zip);
+        StableZipWriter writer = new StableZipWriter(os, executor)) {
+      for (int i = 0; i < 500; i++) {
+        if (i % 50 == 0) {
+          writer.putDirectory("dir" + i + "/");
+          writer.setLevel(i % 100 == 0 ? Deflater.BEST_COMPRESSION : Deflater.BEST_SPEED);
+        }
+        byte[] contents = new byte[random.nextInt(64 * 1024)];
+        // Half random, so there's something for the deflater to do
+        random.nextBytes(contents);
+        Arrays.fill(contents, 0, contents.length / 2, (byte) i);
+        writer.putEntry("dir" + (i - i % 50) + "/entry" + i, contents);
+      }
+    }
+  }
+
+  private static String read(ZipFile zipFile, ZipEntry entry) throws IOException {
+    try (InputStream is = zipFile.getInputStream(entry)) {
+      return new String(is.readAllBytes(), UTF_8);
+    }
+  }
+}